@@ -0,0 +1,50 @@
+package per.goweii.shadowlayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import per.goweii.popupshadowlayout.PopupArrowGeometry;
+
+/**
+ * 箭头几何计算的吞吐量，对应布局测量和每次构建轮廓时的计算。
+ */
+@State(Scope.Thread)
+public class PopupArrowGeometryBenchmark {
+    @Param({"8", "24", "64"})
+    public int arrowWidth;
+
+    @Param({"6", "16", "48"})
+    public int arrowHeight;
+
+    @Param({"0", "4", "12"})
+    public int arrowRadius;
+
+    public int cornerRadius = 12;
+    public float start = 8F;
+    public float end = 320F;
+
+    @Benchmark
+    public double calcVertexDegrees() {
+        return PopupArrowGeometry.calcVertexDegrees(arrowWidth, arrowHeight);
+    }
+
+    @Benchmark
+    public float calcRealHalfArrowWidth() {
+        return PopupArrowGeometry.calcRealHalfArrowWidth(arrowWidth, arrowHeight, arrowRadius);
+    }
+
+    @Benchmark
+    public int calcArrowInset() {
+        return PopupArrowGeometry.calcArrowInset(arrowWidth, arrowHeight, arrowRadius);
+    }
+
+    @Benchmark
+    public float calcRealArrowOffset() {
+        final float minArrowPadding = cornerRadius
+                + PopupArrowGeometry.calcRealHalfArrowWidth(arrowWidth, arrowHeight, arrowRadius);
+        return PopupArrowGeometry.calcRealArrowOffset(PopupArrowGeometry.ARROW_ALIGN_CENTER,
+                0, minArrowPadding, start, end);
+    }
+}
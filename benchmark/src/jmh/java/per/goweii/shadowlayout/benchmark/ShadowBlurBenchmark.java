@@ -0,0 +1,73 @@
+package per.goweii.shadowlayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import per.goweii.shadowlayout.ShadowAnalyticBlur;
+import per.goweii.shadowlayout.ShadowBlurEngine;
+
+/**
+ * 阴影蒙版生成的吞吐量，蒙版为size x size，中间是留出模糊扩散范围的圆角矩形。
+ */
+@State(Scope.Thread)
+public class ShadowBlurBenchmark {
+    @Param({"64", "256", "512"})
+    public int size;
+
+    @Param({"4", "16", "48"})
+    public float shadowRadius;
+
+    public float cornerRadius = 16F;
+
+    private final ShadowBlurEngine mBlurEngine = new ShadowBlurEngine();
+    private final ShadowAnalyticBlur mAnalyticBlur = new ShadowAnalyticBlur();
+
+    private byte[] mSource;
+    private byte[] mMask;
+    private float mSigma;
+    private float mInset;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mSigma = ShadowBlurEngine.convertRadiusToSigma(Math.abs(shadowRadius) * 0.75F);
+        mInset = Math.min(ShadowBlurEngine.calcBlurReach(mSigma, ShadowBlurEngine.MODE_GAUSSIAN), size / 4);
+        mSource = new byte[size * size];
+        mMask = new byte[size * size];
+        // 填充不带圆角的矩形，模糊的耗时和蒙版内容无关
+        final int inset = (int) mInset;
+        for (int y = inset; y < size - inset; y++) {
+            for (int x = inset; x < size - inset; x++) {
+                mSource[y * size + x] = (byte) 0xFF;
+            }
+        }
+        // 预热卷积核和行缓冲，只测量稳定后的分配
+        System.arraycopy(mSource, 0, mMask, 0, mMask.length);
+        mBlurEngine.blur(mMask, 0, size, size, size, mSigma, ShadowBlurEngine.MODE_GAUSSIAN);
+        mBlurEngine.blur(mMask, 0, size, size, size, mSigma, ShadowBlurEngine.MODE_BOX);
+    }
+
+    @Benchmark
+    public byte[] gaussian() {
+        System.arraycopy(mSource, 0, mMask, 0, mMask.length);
+        mBlurEngine.blur(mMask, 0, size, size, size, mSigma, ShadowBlurEngine.MODE_GAUSSIAN);
+        return mMask;
+    }
+
+    @Benchmark
+    public byte[] box() {
+        System.arraycopy(mSource, 0, mMask, 0, mMask.length);
+        mBlurEngine.blur(mMask, 0, size, size, size, mSigma, ShadowBlurEngine.MODE_BOX);
+        return mMask;
+    }
+
+    @Benchmark
+    public byte[] analytic() {
+        mAnalyticBlur.render(mMask, 0, size, size, size,
+                mInset, mInset, size - mInset, size - mInset, cornerRadius, mSigma);
+        return mMask;
+    }
+}
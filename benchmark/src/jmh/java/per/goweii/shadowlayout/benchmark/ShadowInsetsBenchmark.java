@@ -0,0 +1,31 @@
+package per.goweii.shadowlayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import per.goweii.shadowlayout.ShadowInsets;
+
+/**
+ * 阴影内边距计算的吞吐量，每次阴影参数改变时都会执行。
+ */
+@State(Scope.Thread)
+public class ShadowInsetsBenchmark {
+    @Param({"-16", "4", "16", "48"})
+    public float shadowRadius;
+
+    @Param({"false", "true"})
+    public boolean shadowSymmetry;
+
+    public float shadowOffsetX = 2F;
+    public float shadowOffsetY = 6F;
+
+    private final float[] mInsets = new float[4];
+
+    @Benchmark
+    public float[] calcShadowInsets() {
+        ShadowInsets.calcShadowInsets(shadowRadius, shadowOffsetX, shadowOffsetY, shadowSymmetry, mInsets);
+        return mInsets;
+    }
+}
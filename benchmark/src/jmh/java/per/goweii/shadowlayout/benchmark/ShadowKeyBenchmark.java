@@ -0,0 +1,40 @@
+package per.goweii.shadowlayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import per.goweii.shadowlayout.ShadowKey;
+
+/**
+ * 阴影缓存key的构建和比较，缓存命中时只会执行{@link ShadowKey.Builder#matches(ShadowKey)}。
+ */
+@State(Scope.Thread)
+public class ShadowKeyBenchmark {
+    private final ShadowKey.Builder mBuilder = new ShadowKey.Builder();
+    private ShadowKey mKey;
+
+    @Setup
+    public void setup() {
+        mKey = fill().build();
+    }
+
+    private ShadowKey.Builder fill() {
+        return mBuilder.reset(ShadowKeyBenchmark.class)
+                .append(320).append(240)
+                .append(-16F).append(2F).append(6F)
+                .append(0xFF000000).append(false)
+                .append(12F).append(12F).append(12F).append(12F);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return fill().matches(mKey);
+    }
+
+    @Benchmark
+    public ShadowKey build() {
+        return fill().build();
+    }
+}
@@ -0,0 +1,52 @@
+package per.goweii.shadowlayout.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import per.goweii.shadowlayout.ShadowPathBuffer;
+
+/**
+ * 圆角矩形轮廓构建到{@link ShadowPathBuffer}以及按内容比较的吞吐量。
+ */
+@State(Scope.Thread)
+public class ShadowPathBufferBenchmark {
+    @Param({"64", "512"})
+    public int size;
+
+    @Param({"0", "12", "48"})
+    public float cornerRadius;
+
+    private final float[] mRadii = new float[8];
+    private final float[] mBounds = new float[4];
+    private final ShadowPathBuffer mBuffer = new ShadowPathBuffer();
+    private final ShadowPathBuffer mOther = new ShadowPathBuffer();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < mRadii.length; i++) {
+            mRadii[i] = cornerRadius;
+        }
+        mOther.reset().addRoundRect(8, 8, size - 8, size - 8, mRadii);
+    }
+
+    @Benchmark
+    public float[] buildRoundRect() {
+        mBuffer.reset().addRoundRect(8, 8, size - 8, size - 8, mRadii);
+        mBuffer.computeBounds(mBounds);
+        return mBounds;
+    }
+
+    @Benchmark
+    public boolean contentEquals() {
+        mBuffer.reset().addRoundRect(8, 8, size - 8, size - 8, mRadii);
+        return mBuffer.contentEquals(mOther);
+    }
+
+    @Benchmark
+    public int contentHashCode() {
+        return mOther.contentHashCode();
+    }
+}
@@ -0,0 +1,84 @@
+package per.goweii.popupshadowlayout;
+
+/**
+ * 箭头的几何计算
+ * <p>
+ * 只依赖箭头和圆角参数，不依赖Android的绘图类，
+ * 由{@link PopupShadowLayout.PopupShadowOutlineProvider}调用，也可以直接在JVM上做基准测试。
+ */
+public final class PopupArrowGeometry {
+    public static final int ARROW_ALIGN_CENTER = 0;
+    public static final int ARROW_ALIGN_START = 1;
+    public static final int ARROW_ALIGN_END = 2;
+
+    private PopupArrowGeometry() {
+    }
+
+    /**
+     * 箭头顶点角度的一半，单位为度。
+     */
+    public static double calcVertexDegrees(int arrowWidth, int arrowHeight) {
+        if (arrowHeight <= 0) return 180.0;
+        if (arrowWidth <= 0) return 0.0;
+        double tan = (arrowWidth / 2.0) / arrowHeight;
+        double d = Math.atan(tan);
+        return Math.toDegrees(d);
+    }
+
+    /**
+     * 箭头底边和圆角过渡后实际占用的半宽。
+     */
+    public static float calcRealHalfArrowWidth(int arrowWidth, int arrowHeight, int arrowRadius) {
+        double vertexDegrees = calcVertexDegrees(arrowWidth, arrowHeight);
+        double d = (90.0 - vertexDegrees) / 2.0;
+        float increase = (float) (Math.tan(Math.toRadians(d)) * arrowRadius);
+        return arrowWidth / 2F + increase;
+    }
+
+    /**
+     * 箭头所在一侧需要留出的内边距，箭头顶点的圆角会减少箭头实际的高度。
+     */
+    public static int calcArrowInset(int arrowWidth, int arrowHeight, int arrowRadius) {
+        if (arrowWidth <= 0 || arrowHeight <= 0) {
+            return 0;
+        }
+        final float halfArrowWidth = arrowWidth / 2F;
+        final double vertexDegrees = calcVertexDegrees(arrowWidth, arrowHeight);
+
+        final float b1 = (float) (arrowRadius * Math.cos(Math.toRadians(vertexDegrees)));
+        final float b2 = arrowHeight * b1 / halfArrowWidth;
+
+        float arrowRadiusOffset = b2 * 0.5F;
+        return (int) (arrowHeight - arrowRadiusOffset + 0.5F);
+    }
+
+    /**
+     * 箭头顶点在所在边上的实际位置，start和end为这条边在阴影内边距以内的起止坐标。
+     */
+    public static float calcRealArrowOffset(int arrowAlign,
+                                            int arrowOffset,
+                                            float minArrowPadding,
+                                            float start,
+                                            float end) {
+        final float minOffset = start + minArrowPadding;
+        final float maxOffset = end - minArrowPadding;
+        float realOffset;
+        switch (arrowAlign) {
+            case ARROW_ALIGN_CENTER:
+                realOffset = (minOffset + maxOffset) / 2F + arrowOffset;
+                break;
+            case ARROW_ALIGN_START:
+                realOffset = minOffset + arrowOffset;
+                break;
+            case ARROW_ALIGN_END:
+                realOffset = maxOffset - arrowOffset;
+                break;
+            default:
+                realOffset = 0;
+                break;
+        }
+        realOffset = Math.max(realOffset, minOffset);
+        realOffset = Math.min(realOffset, maxOffset);
+        return realOffset;
+    }
+}
@@ -6,7 +6,6 @@ import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.util.AttributeSet;
-import android.util.Log;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
@@ -16,7 +15,10 @@ import androidx.annotation.VisibleForTesting;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
+import per.goweii.shadowlayout.ShadowKey;
 import per.goweii.shadowlayout.ShadowLayout;
+import per.goweii.shadowlayout.ShadowPathBuffer;
+import per.goweii.shadowlayout.ShadowPathReceiver;
 
 /**
  * 带箭头的阴影布局，可用于PopupWindow。
@@ -68,7 +70,7 @@ public class PopupShadowLayout extends ShadowLayout {
     @Override
     protected void updateShadowInsets(@NonNull RectF shadowInsets) {
         super.updateShadowInsets(shadowInsets);
-        Rect arrowInsets = mPopupShadowOutlineProvider.calcArrowInsets();
+        Rect arrowInsets = mPopupShadowOutlineProvider.getArrowInsets();
         shadowInsets.left = shadowInsets.left + arrowInsets.left;
         shadowInsets.top = shadowInsets.top + arrowInsets.top;
         shadowInsets.right = shadowInsets.right + arrowInsets.right;
@@ -162,9 +164,9 @@ public class PopupShadowLayout extends ShadowLayout {
     }
 
     public static class PopupShadowOutlineProvider extends ShadowLayout.ShadowOutlineProvider {
-        public static final int ARROW_ALIGN_CENTER = 0;
-        public static final int ARROW_ALIGN_START = 1;
-        public static final int ARROW_ALIGN_END = 2;
+        public static final int ARROW_ALIGN_CENTER = PopupArrowGeometry.ARROW_ALIGN_CENTER;
+        public static final int ARROW_ALIGN_START = PopupArrowGeometry.ARROW_ALIGN_START;
+        public static final int ARROW_ALIGN_END = PopupArrowGeometry.ARROW_ALIGN_END;
 
         public static final int ARROW_SIDE_NONE = 0;
         public static final int ARROW_SIDE_TOP = 1;
@@ -172,6 +174,8 @@ public class PopupShadowLayout extends ShadowLayout {
         public static final int ARROW_SIDE_RIGHT = 3;
         public static final int ARROW_SIDE_BOTTOM = 4;
 
+        private static final int OUTLINE_CACHE_SIZE = 4;
+
         @ArrowSide
         private int mArrowSide = ARROW_SIDE_NONE;
         @ArrowAlign
@@ -182,69 +186,167 @@ public class PopupShadowLayout extends ShadowLayout {
         private int mArrowHeight = 0;
         private int mCornerRadius = 0;
 
+        // 由箭头和圆角参数推导出的几何数据，只在参数改变时重新计算
         private final Rect mArrowInsets = new Rect();
-
+        private final RectF mArrowInsetsF = new RectF();
+        private double mVertexDegrees = 180.0;
+        private float mRealHalfArrowWidth = 0F;
+        private float mArrowA1 = 0F;
+        private float mArrowB1 = 0F;
+        private float mArrowB2 = 0F;
+        private int mMinimumWidth = 0;
+        private int mMinimumHeight = 0;
+
+        // 最近构建过的轮廓，按使用顺序排列
+        private final ShadowKey.Builder mOutlineKeyBuilder = new ShadowKey.Builder();
+        private final ShadowKey[] mOutlineCacheKeys = new ShadowKey[OUTLINE_CACHE_SIZE];
+        private final ShadowPathBuffer[] mOutlineCacheOutlines = new ShadowPathBuffer[OUTLINE_CACHE_SIZE];
+        private final ShadowPathReceiver mPathReceiver = new ShadowPathReceiver();
+        private final boolean mSnapshot;
+
+        public PopupShadowOutlineProvider() {
+            mSnapshot = false;
+        }
+
+        private PopupShadowOutlineProvider(@NonNull PopupShadowOutlineProvider source) {
+            mArrowSide = source.mArrowSide;
+            mArrowAlign = source.mArrowAlign;
+            mArrowOffset = source.mArrowOffset;
+            mArrowRadius = source.mArrowRadius;
+            mArrowWidth = source.mArrowWidth;
+            mArrowHeight = source.mArrowHeight;
+            mCornerRadius = source.mCornerRadius;
+            updateArrowGeometry();
+            mSnapshot = true;
+        }
+
+        /**
+         * 轮廓只由布局尺寸、阴影内边距和箭头、圆角参数决定，这些参数相同时直接回放之前构建的轮廓。
+         */
         @Override
         public void buildShadowOutline(@NonNull ShadowLayout shadowLayout,
                                        @NonNull Path shadowOutline,
                                        @NonNull RectF shadowInsets) {
+            final int width = shadowLayout.getWidth();
+            final int height = shadowLayout.getHeight();
+            final ShadowKey.Builder builder = mOutlineKeyBuilder;
+            builder.reset(PopupShadowOutlineProvider.class)
+                    .append(width)
+                    .append(height)
+                    .append(shadowInsets.left)
+                    .append(shadowInsets.top)
+                    .append(shadowInsets.right)
+                    .append(shadowInsets.bottom);
+            buildShadowOutlineKey(shadowLayout, builder);
+            for (int i = 0; i < OUTLINE_CACHE_SIZE; i++) {
+                if (mOutlineCacheKeys[i] != null && builder.matches(mOutlineCacheKeys[i])) {
+                    final ShadowPathBuffer outline = mOutlineCacheOutlines[i];
+                    moveOutlineCacheToFront(i, mOutlineCacheKeys[i], outline);
+                    mPathReceiver.replay(outline, shadowOutline);
+                    return;
+                }
+            }
+            final int last = OUTLINE_CACHE_SIZE - 1;
+            ShadowPathBuffer outline = mOutlineCacheOutlines[last];
+            if (outline == null) {
+                outline = new ShadowPathBuffer();
+            }
+            outline.reset();
+            buildShadowOutline(shadowLayout, outline, shadowInsets, width, height);
+            moveOutlineCacheToFront(last, builder.build(), outline);
+            mPathReceiver.replay(outline, shadowOutline);
+        }
+
+        @Override
+        public boolean buildShadowOutline(@NonNull ShadowLayout shadowLayout,
+                                          @NonNull ShadowPathBuffer shadowOutline,
+                                          @NonNull RectF shadowInsets,
+                                          int width,
+                                          int height) {
+            buildArrowOutline(shadowOutline, shadowInsets, width, height);
+            return true;
+        }
+
+        /**
+         * 箭头占用控件一侧的范围，轮廓主体按箭头的内边距缩进。
+         */
+        @Override
+        public boolean buildShadowOutline(@NonNull ShadowPathBuffer shadowOutline,
+                                          int width,
+                                          int height) {
+            buildArrowOutline(shadowOutline, mArrowInsetsF, width, height);
+            return true;
+        }
+
+        private void buildArrowOutline(@NonNull ShadowPathBuffer shadowOutline,
+                                       @NonNull RectF shadowInsets,
+                                       int width,
+                                       int height) {
             if (mArrowWidth <= 0 || mArrowHeight <= 0) {
-                buildNoneArrow(shadowLayout, shadowOutline, shadowInsets);
+                buildNoneArrow(shadowOutline, shadowInsets, width, height);
                 return;
             }
             switch (mArrowSide) {
                 case ARROW_SIDE_LEFT:
-                    buildLeftArrow(shadowLayout, shadowOutline, shadowInsets);
+                    buildLeftArrow(shadowOutline, shadowInsets, width, height);
                     break;
                 case ARROW_SIDE_TOP:
-                    buildTopArrow(shadowLayout, shadowOutline, shadowInsets);
+                    buildTopArrow(shadowOutline, shadowInsets, width, height);
                     break;
                 case ARROW_SIDE_RIGHT:
-                    buildRightArrow(shadowLayout, shadowOutline, shadowInsets);
+                    buildRightArrow(shadowOutline, shadowInsets, width, height);
                     break;
                 case ARROW_SIDE_BOTTOM:
-                    buildBottomArrow(shadowLayout, shadowOutline, shadowInsets);
+                    buildBottomArrow(shadowOutline, shadowInsets, width, height);
                     break;
                 default:
-                    buildNoneArrow(shadowLayout, shadowOutline, shadowInsets);
+                    buildNoneArrow(shadowOutline, shadowInsets, width, height);
                     break;
             }
         }
 
-        public int getMinimumWidth() {
-            int minSize;
-            switch (mArrowSide) {
-                case ARROW_SIDE_LEFT:
-                case ARROW_SIDE_RIGHT:
-                    minSize = mCornerRadius * 2 + mArrowHeight;
-                    break;
-                case ARROW_SIDE_TOP:
-                case ARROW_SIDE_BOTTOM:
-                    minSize = (int) (mCornerRadius * 2 + calcRealHalfArrowWidth() * 2);
-                    break;
-                default:
-                    minSize = mCornerRadius * 2;
-                    break;
+        private void moveOutlineCacheToFront(int index, @NonNull ShadowKey key, @NonNull ShadowPathBuffer outline) {
+            for (int i = index; i > 0; i--) {
+                mOutlineCacheKeys[i] = mOutlineCacheKeys[i - 1];
+                mOutlineCacheOutlines[i] = mOutlineCacheOutlines[i - 1];
             }
-            return minSize;
+            mOutlineCacheKeys[0] = key;
+            mOutlineCacheOutlines[0] = outline;
+        }
+
+        @Override
+        public boolean buildShadowOutlineKey(@NonNull ShadowLayout shadowLayout,
+                                             @NonNull ShadowKey.Builder builder) {
+            return buildShadowOutlineKey(builder);
+        }
+
+        @Override
+        public boolean buildShadowOutlineKey(@NonNull ShadowKey.Builder builder) {
+            builder.append(mArrowSide)
+                    .append(mArrowAlign)
+                    .append(mArrowOffset)
+                    .append(mArrowRadius)
+                    .append(mArrowWidth)
+                    .append(mArrowHeight)
+                    .append(mCornerRadius);
+            return true;
+        }
+
+        /**
+         * 复制箭头和圆角参数并重新计算几何数据，快照构建轮廓时只读取这些数据。
+         */
+        @NonNull
+        @Override
+        public PopupShadowOutlineProvider snapshot() {
+            return new PopupShadowOutlineProvider(this);
+        }
+
+        public int getMinimumWidth() {
+            return mMinimumWidth;
         }
 
         public int getMinimumHeight() {
-            int minSize;
-            switch (mArrowSide) {
-                case ARROW_SIDE_LEFT:
-                case ARROW_SIDE_RIGHT:
-                    minSize = (int) (mCornerRadius * 2 + calcRealHalfArrowWidth() * 2);
-                    break;
-                case ARROW_SIDE_TOP:
-                case ARROW_SIDE_BOTTOM:
-                    minSize = mCornerRadius * 2 + mArrowHeight;
-                    break;
-                default:
-                    minSize = mCornerRadius * 2;
-                    break;
-            }
-            return minSize;
+            return mMinimumHeight;
         }
 
         @ArrowSide
@@ -253,8 +355,10 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setArrowSide(@ArrowSide int arrowSide) {
+            checkNotSnapshot();
             if (mArrowSide != arrowSide) {
                 mArrowSide = arrowSide;
+                updateArrowGeometry();
                 invalidateShadowOutline();
             }
         }
@@ -265,6 +369,7 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setArrowAlign(@ArrowAlign int arrowAlign) {
+            checkNotSnapshot();
             if (mArrowAlign != arrowAlign) {
                 mArrowAlign = arrowAlign;
                 invalidateShadowOutline();
@@ -276,6 +381,7 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setArrowOffset(int arrowOffset) {
+            checkNotSnapshot();
             if (mArrowOffset != arrowOffset) {
                 mArrowOffset = arrowOffset;
                 invalidateShadowOutline();
@@ -287,8 +393,10 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setArrowRadius(int arrowRadius) {
+            checkNotSnapshot();
             if (mArrowRadius != arrowRadius) {
                 mArrowRadius = arrowRadius;
+                updateArrowGeometry();
                 invalidateShadowOutline();
             }
         }
@@ -298,8 +406,10 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setCornerRadius(int cornerRadius) {
+            checkNotSnapshot();
             if (mCornerRadius != cornerRadius) {
                 mCornerRadius = cornerRadius;
+                updateArrowGeometry();
                 invalidateShadowOutline();
             }
         }
@@ -309,8 +419,10 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setArrowWidth(int arrowWidth) {
+            checkNotSnapshot();
             if (mArrowWidth != arrowWidth) {
                 mArrowWidth = arrowWidth;
+                updateArrowGeometry();
                 invalidateShadowOutline();
             }
         }
@@ -320,81 +432,106 @@ public class PopupShadowLayout extends ShadowLayout {
         }
 
         public void setArrowHeight(int arrowHeight) {
+            checkNotSnapshot();
             if (mArrowHeight != arrowHeight) {
                 mArrowHeight = arrowHeight;
+                updateArrowGeometry();
                 invalidateShadowOutline();
             }
         }
 
-        @NonNull
-        private Rect calcArrowInsets() {
-            mArrowInsets.setEmpty();
-
-            if (mArrowSide == ARROW_SIDE_NONE) {
-                return mArrowInsets;
-            }
-
-            if (mArrowWidth <= 0 || mArrowHeight <= 0) {
-                return mArrowInsets;
+        private void checkNotSnapshot() {
+            if (mSnapshot) {
+                throw new IllegalStateException("Snapshot is immutable");
             }
+        }
 
-            final float arrowRadius = mArrowRadius;
-            final float arrowHeight = mArrowHeight;
-            final float halfArrowWidth = getHalfArrowWidth();
-            final double vertexDegrees = calcVertexDegrees();
+        @NonNull
+        private Rect getArrowInsets() {
+            return mArrowInsets;
+        }
 
-            final float b1 = (float) (arrowRadius * Math.cos(Math.toRadians(vertexDegrees)));
-            final float b2 = arrowHeight * b1 / halfArrowWidth;
+        /**
+         * 箭头或圆角参数改变时重新计算箭头的几何数据，测量和构建轮廓时只读取计算好的结果。
+         */
+        private void updateArrowGeometry() {
+            final boolean hasArrow = mArrowWidth > 0 && mArrowHeight > 0;
+            mVertexDegrees = PopupArrowGeometry.calcVertexDegrees(mArrowWidth, mArrowHeight);
+            mRealHalfArrowWidth = PopupArrowGeometry.calcRealHalfArrowWidth(mArrowWidth, mArrowHeight, mArrowRadius);
+            final double vertexRadians = Math.toRadians(mVertexDegrees);
+            mArrowA1 = (float) (mArrowRadius * Math.sin(vertexRadians));
+            mArrowB1 = (float) (mArrowRadius * Math.cos(vertexRadians));
+            mArrowB2 = hasArrow ? mArrowHeight * mArrowB1 / getHalfArrowWidth() : 0F;
 
-            float arrowRadiusOffset = b2 * 0.5F;
+            mArrowInsets.setEmpty();
+            if (hasArrow) {
+                final int arrowInset = PopupArrowGeometry.calcArrowInset(mArrowWidth, mArrowHeight, mArrowRadius);
+                switch (mArrowSide) {
+                    case ARROW_SIDE_TOP:
+                        mArrowInsets.top = arrowInset;
+                        break;
+                    case ARROW_SIDE_LEFT:
+                        mArrowInsets.left = arrowInset;
+                        break;
+                    case ARROW_SIDE_RIGHT:
+                        mArrowInsets.right = arrowInset;
+                        break;
+                    case ARROW_SIDE_BOTTOM:
+                        mArrowInsets.bottom = arrowInset;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            mArrowInsetsF.set(mArrowInsets);
 
+            final int arrowMinSize = (int) (mCornerRadius * 2 + mRealHalfArrowWidth * 2);
             switch (mArrowSide) {
-                case ARROW_SIDE_TOP:
-                    mArrowInsets.top = (int) (arrowHeight - arrowRadiusOffset + 0.5F);
-                    break;
                 case ARROW_SIDE_LEFT:
-                    mArrowInsets.left = (int) (arrowHeight - arrowRadiusOffset + 0.5F);
-                    break;
                 case ARROW_SIDE_RIGHT:
-                    mArrowInsets.right = (int) (arrowHeight - arrowRadiusOffset + 0.5F);
+                    mMinimumWidth = mCornerRadius * 2 + mArrowHeight;
+                    mMinimumHeight = arrowMinSize;
                     break;
+                case ARROW_SIDE_TOP:
                 case ARROW_SIDE_BOTTOM:
-                    mArrowInsets.bottom = (int) (arrowHeight - arrowRadiusOffset + 0.5F);
+                    mMinimumWidth = arrowMinSize;
+                    mMinimumHeight = mCornerRadius * 2 + mArrowHeight;
                     break;
                 default:
+                    mMinimumWidth = mCornerRadius * 2;
+                    mMinimumHeight = mCornerRadius * 2;
                     break;
             }
-            return mArrowInsets;
         }
 
-        private void buildNoneArrow(@NonNull ShadowLayout shadowLayout,
-                                    @NonNull Path shadowOutline,
-                                    @NonNull RectF shadowInsets) {
-            moveToTopLeft(shadowLayout, shadowOutline, shadowInsets);
-            addTopLeftCorner(shadowLayout, shadowOutline, shadowInsets);
-            lineToTopRight(shadowLayout, shadowOutline, shadowInsets);
-            addTopRightCorner(shadowLayout, shadowOutline, shadowInsets);
-            lineToBottomRight(shadowLayout, shadowOutline, shadowInsets);
-            addBottomRightCorner(shadowLayout, shadowOutline, shadowInsets);
-            lineToBottomLeft(shadowLayout, shadowOutline, shadowInsets);
-            addBottomLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+        private void buildNoneArrow(@NonNull ShadowPathBuffer shadowOutline,
+                                    @NonNull RectF shadowInsets,
+                                    int width,
+                                    int height) {
+            moveToTopLeft(shadowOutline, shadowInsets, width, height);
+            addTopLeftCorner(shadowOutline, shadowInsets, width, height);
+            lineToTopRight(shadowOutline, shadowInsets, width, height);
+            addTopRightCorner(shadowOutline, shadowInsets, width, height);
+            lineToBottomRight(shadowOutline, shadowInsets, width, height);
+            addBottomRightCorner(shadowOutline, shadowInsets, width, height);
+            lineToBottomLeft(shadowOutline, shadowInsets, width, height);
+            addBottomLeftCorner(shadowOutline, shadowInsets, width, height);
             shadowOutline.close();
         }
 
-        private void buildLeftArrow(@NonNull ShadowLayout shadowLayout,
-                                    @NonNull Path shadowOutline,
-                                    @NonNull RectF shadowInsets) {
+        private void buildLeftArrow(@NonNull ShadowPathBuffer shadowOutline,
+                                    @NonNull RectF shadowInsets,
+                                    int width,
+                                    int height) {
             final float arrowRadius = mArrowRadius;
-            final float arrowHeight = mArrowHeight;
             final float halfArrowWidth = getHalfArrowWidth();
-            final float realArrowOffset = getRealArrowOffset(shadowLayout, shadowInsets);
-            final float realHalfArrowWidth = calcRealHalfArrowWidth();
-            final double vertexDegrees = calcVertexDegrees();
+            final float realArrowOffset = calcRealArrowOffset(shadowInsets, width, height);
+            final float realHalfArrowWidth = mRealHalfArrowWidth;
 
-            final float a1 = (float) (arrowRadius * Math.sin(Math.toRadians(vertexDegrees)));
-            final float b1 = (float) (arrowRadius * Math.cos(Math.toRadians(vertexDegrees)));
+            final float a1 = mArrowA1;
+            final float b1 = mArrowB1;
             final float a2 = b1;
-            final float b2 = arrowHeight * a2 / halfArrowWidth;
+            final float b2 = mArrowB2;
 
             shadowOutline.moveTo(
                     shadowInsets.left,
@@ -427,35 +564,34 @@ public class PopupShadowLayout extends ShadowLayout {
                     realArrowOffset - realHalfArrowWidth
             );
 
-            lineToTopLeft(shadowLayout, shadowOutline, shadowInsets);
-            addTopLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopLeft(shadowOutline, shadowInsets, width, height);
+            addTopLeftCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToTopRight(shadowLayout, shadowOutline, shadowInsets);
-            addTopRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopRight(shadowOutline, shadowInsets, width, height);
+            addTopRightCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToBottomRight(shadowLayout, shadowOutline, shadowInsets);
-            addBottomRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomRight(shadowOutline, shadowInsets, width, height);
+            addBottomRightCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToBottomLeft(shadowLayout, shadowOutline, shadowInsets);
-            addBottomLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomLeft(shadowOutline, shadowInsets, width, height);
+            addBottomLeftCorner(shadowOutline, shadowInsets, width, height);
 
             shadowOutline.close();
         }
 
-        private void buildTopArrow(@NonNull ShadowLayout shadowLayout,
-                                   @NonNull Path shadowOutline,
-                                   @NonNull RectF shadowInsets) {
+        private void buildTopArrow(@NonNull ShadowPathBuffer shadowOutline,
+                                   @NonNull RectF shadowInsets,
+                                   int width,
+                                   int height) {
             final float arrowRadius = mArrowRadius;
-            final float arrowHeight = mArrowHeight;
             final float halfArrowWidth = getHalfArrowWidth();
-            final float realArrowOffset = getRealArrowOffset(shadowLayout, shadowInsets);
-            final float realHalfArrowWidth = calcRealHalfArrowWidth();
-            final double vertexDegrees = calcVertexDegrees();
+            final float realArrowOffset = calcRealArrowOffset(shadowInsets, width, height);
+            final float realHalfArrowWidth = mRealHalfArrowWidth;
 
-            final float a1 = (float) (arrowRadius * Math.sin(Math.toRadians(vertexDegrees)));
-            final float b1 = (float) (arrowRadius * Math.cos(Math.toRadians(vertexDegrees)));
+            final float a1 = mArrowA1;
+            final float b1 = mArrowB1;
             final float a2 = b1;
-            final float b2 = arrowHeight * a2 / halfArrowWidth;
+            final float b2 = mArrowB2;
 
             shadowOutline.moveTo(
                     realArrowOffset - realHalfArrowWidth,
@@ -488,158 +624,156 @@ public class PopupShadowLayout extends ShadowLayout {
                     shadowInsets.top
             );
 
-            lineToTopRight(shadowLayout, shadowOutline, shadowInsets);
-            addTopRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopRight(shadowOutline, shadowInsets, width, height);
+            addTopRightCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToBottomRight(shadowLayout, shadowOutline, shadowInsets);
-            addBottomRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomRight(shadowOutline, shadowInsets, width, height);
+            addBottomRightCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToBottomLeft(shadowLayout, shadowOutline, shadowInsets);
-            addBottomLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomLeft(shadowOutline, shadowInsets, width, height);
+            addBottomLeftCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToTopLeft(shadowLayout, shadowOutline, shadowInsets);
-            addTopLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopLeft(shadowOutline, shadowInsets, width, height);
+            addTopLeftCorner(shadowOutline, shadowInsets, width, height);
 
             shadowOutline.close();
         }
 
-        private void buildRightArrow(@NonNull ShadowLayout shadowLayout,
-                                     @NonNull Path shadowOutline,
-                                     @NonNull RectF shadowInsets) {
+        private void buildRightArrow(@NonNull ShadowPathBuffer shadowOutline,
+                                     @NonNull RectF shadowInsets,
+                                     int width,
+                                     int height) {
             final float arrowRadius = mArrowRadius;
-            final float arrowHeight = mArrowHeight;
             final float halfArrowWidth = getHalfArrowWidth();
-            final float realArrowOffset = getRealArrowOffset(shadowLayout, shadowInsets);
-            final float realHalfArrowWidth = calcRealHalfArrowWidth();
-            final double vertexDegrees = calcVertexDegrees();
+            final float realArrowOffset = calcRealArrowOffset(shadowInsets, width, height);
+            final float realHalfArrowWidth = mRealHalfArrowWidth;
 
-            final float a1 = (float) (arrowRadius * Math.sin(Math.toRadians(vertexDegrees)));
-            final float b1 = (float) (arrowRadius * Math.cos(Math.toRadians(vertexDegrees)));
+            final float a1 = mArrowA1;
+            final float b1 = mArrowB1;
             final float a2 = b1;
-            final float b2 = arrowHeight * a2 / halfArrowWidth;
+            final float b2 = mArrowB2;
 
             shadowOutline.moveTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
+                    width - shadowInsets.right,
                     realArrowOffset + realHalfArrowWidth
             );
             shadowOutline.quadTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
+                    width - shadowInsets.right,
                     realArrowOffset + halfArrowWidth,
-                    shadowLayout.getWidth() - shadowInsets.right + arrowRadius - a1,
+                    width - shadowInsets.right + arrowRadius - a1,
                     realArrowOffset + realHalfArrowWidth - b1
             );
             shadowOutline.lineTo(
-                    shadowLayout.getWidth() - b2 - (shadowInsets.right - mArrowHeight),
+                    width - b2 - (shadowInsets.right - mArrowHeight),
                     realArrowOffset + a2
             );
             shadowOutline.quadTo(
-                    shadowLayout.getWidth() - (shadowInsets.right - mArrowHeight),
+                    width - (shadowInsets.right - mArrowHeight),
                     realArrowOffset,
-                    shadowLayout.getWidth() - b2 - (shadowInsets.right - mArrowHeight),
+                    width - b2 - (shadowInsets.right - mArrowHeight),
                     realArrowOffset - a2
             );
             shadowOutline.lineTo(
-                    shadowLayout.getWidth() - shadowInsets.right + arrowRadius - a1,
+                    width - shadowInsets.right + arrowRadius - a1,
                     realArrowOffset - realHalfArrowWidth + b1
             );
             shadowOutline.quadTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
+                    width - shadowInsets.right,
                     realArrowOffset - halfArrowWidth,
-                    shadowLayout.getWidth() - shadowInsets.right,
+                    width - shadowInsets.right,
                     realArrowOffset - realHalfArrowWidth
             );
 
-            lineToBottomRight(shadowLayout, shadowOutline, shadowInsets);
-            addBottomRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomRight(shadowOutline, shadowInsets, width, height);
+            addBottomRightCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToBottomLeft(shadowLayout, shadowOutline, shadowInsets);
-            addBottomLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomLeft(shadowOutline, shadowInsets, width, height);
+            addBottomLeftCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToTopLeft(shadowLayout, shadowOutline, shadowInsets);
-            addTopLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopLeft(shadowOutline, shadowInsets, width, height);
+            addTopLeftCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToTopRight(shadowLayout, shadowOutline, shadowInsets);
-            addTopRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopRight(shadowOutline, shadowInsets, width, height);
+            addTopRightCorner(shadowOutline, shadowInsets, width, height);
 
             shadowOutline.close();
         }
 
-        private void buildBottomArrow(@NonNull ShadowLayout shadowLayout,
-                                      @NonNull Path shadowOutline,
-                                      @NonNull RectF shadowInsets) {
+        private void buildBottomArrow(@NonNull ShadowPathBuffer shadowOutline,
+                                      @NonNull RectF shadowInsets,
+                                      int width,
+                                      int height) {
             final float arrowRadius = mArrowRadius;
-            final float arrowHeight = mArrowHeight;
             final float halfArrowWidth = getHalfArrowWidth();
-            final float realArrowOffset = getRealArrowOffset(shadowLayout, shadowInsets);
-            final float realHalfArrowWidth = calcRealHalfArrowWidth();
-            final double vertexDegrees = calcVertexDegrees();
+            final float realArrowOffset = calcRealArrowOffset(shadowInsets, width, height);
+            final float realHalfArrowWidth = mRealHalfArrowWidth;
 
-            final float a1 = (float) (arrowRadius * Math.sin(Math.toRadians(vertexDegrees)));
-            final float b1 = (float) (arrowRadius * Math.cos(Math.toRadians(vertexDegrees)));
+            final float a1 = mArrowA1;
+            final float b1 = mArrowB1;
             final float a2 = b1;
-            final float b2 = arrowHeight * a2 / halfArrowWidth;
+            final float b2 = mArrowB2;
 
             shadowOutline.moveTo(
                     realArrowOffset - realHalfArrowWidth,
-                    shadowLayout.getHeight() - shadowInsets.bottom
+                    height - shadowInsets.bottom
             );
             shadowOutline.quadTo(
                     realArrowOffset - halfArrowWidth,
-                    shadowLayout.getHeight() - shadowInsets.bottom,
+                    height - shadowInsets.bottom,
                     realArrowOffset - realHalfArrowWidth + b1,
-                    shadowLayout.getHeight() - shadowInsets.bottom + arrowRadius - a1
+                    height - shadowInsets.bottom + arrowRadius - a1
             );
             shadowOutline.lineTo(
                     realArrowOffset - a2,
-                    shadowLayout.getHeight() - b2 - (shadowInsets.bottom - mArrowHeight)
+                    height - b2 - (shadowInsets.bottom - mArrowHeight)
             );
             shadowOutline.quadTo(
                     realArrowOffset,
-                    shadowLayout.getHeight() - (shadowInsets.bottom - mArrowHeight),
+                    height - (shadowInsets.bottom - mArrowHeight),
                     realArrowOffset + a2,
-                    shadowLayout.getHeight() - b2 - (shadowInsets.bottom - mArrowHeight)
+                    height - b2 - (shadowInsets.bottom - mArrowHeight)
             );
             shadowOutline.lineTo(
                     realArrowOffset + realHalfArrowWidth - b1,
-                    shadowLayout.getHeight() - shadowInsets.bottom + arrowRadius - a1
+                    height - shadowInsets.bottom + arrowRadius - a1
             );
             shadowOutline.quadTo(
                     realArrowOffset + halfArrowWidth,
-                    shadowLayout.getHeight() - shadowInsets.bottom,
+                    height - shadowInsets.bottom,
                     realArrowOffset + realHalfArrowWidth,
-                    shadowLayout.getHeight() - shadowInsets.bottom
+                    height - shadowInsets.bottom
             );
 
-            lineToBottomLeft(shadowLayout, shadowOutline, shadowInsets);
-            addBottomLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomLeft(shadowOutline, shadowInsets, width, height);
+            addBottomLeftCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToTopLeft(shadowLayout, shadowOutline, shadowInsets);
-            addTopLeftCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopLeft(shadowOutline, shadowInsets, width, height);
+            addTopLeftCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToTopRight(shadowLayout, shadowOutline, shadowInsets);
-            addTopRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToTopRight(shadowOutline, shadowInsets, width, height);
+            addTopRightCorner(shadowOutline, shadowInsets, width, height);
 
-            lineToBottomRight(shadowLayout, shadowOutline, shadowInsets);
-            addBottomRightCorner(shadowLayout, shadowOutline, shadowInsets);
+            lineToBottomRight(shadowOutline, shadowInsets, width, height);
+            addBottomRightCorner(shadowOutline, shadowInsets, width, height);
 
             shadowOutline.close();
         }
 
-        private void moveToTopLeft(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void moveToTopLeft(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.moveTo(
                     shadowInsets.left,
                     shadowInsets.top + mCornerRadius
             );
         }
 
-        private void lineToTopLeft(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void lineToTopLeft(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.lineTo(
                     shadowInsets.left,
                     shadowInsets.top + mCornerRadius
             );
         }
 
-        private void addTopLeftCorner(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void addTopLeftCorner(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.quadTo(
                     shadowInsets.left,
                     shadowInsets.top,
@@ -648,88 +782,60 @@ public class PopupShadowLayout extends ShadowLayout {
             );
         }
 
-        private void moveToTopRight(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
-            shadowOutline.moveTo(
-                    shadowLayout.getWidth() - shadowInsets.right - mCornerRadius,
-                    shadowInsets.top
-            );
-        }
-
-        private void lineToTopRight(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void lineToTopRight(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.lineTo(
-                    shadowLayout.getWidth() - shadowInsets.right - mCornerRadius,
+                    width - shadowInsets.right - mCornerRadius,
                     shadowInsets.top
             );
         }
 
-        private void addTopRightCorner(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void addTopRightCorner(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.quadTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
+                    width - shadowInsets.right,
                     shadowInsets.top,
-                    shadowLayout.getWidth() - shadowInsets.right,
+                    width - shadowInsets.right,
                     shadowInsets.top + mCornerRadius
             );
         }
 
-        private void moveToBottomRight(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
-            shadowOutline.moveTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
-                    shadowLayout.getHeight() - shadowInsets.bottom - mCornerRadius
-            );
-        }
-
-        private void lineToBottomRight(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void lineToBottomRight(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.lineTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
-                    shadowLayout.getHeight() - shadowInsets.bottom - mCornerRadius
+                    width - shadowInsets.right,
+                    height - shadowInsets.bottom - mCornerRadius
             );
         }
 
-        private void addBottomRightCorner(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void addBottomRightCorner(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.quadTo(
-                    shadowLayout.getWidth() - shadowInsets.right,
-                    shadowLayout.getHeight() - shadowInsets.bottom,
-                    shadowLayout.getWidth() - shadowInsets.right - mCornerRadius,
-                    shadowLayout.getHeight() - shadowInsets.bottom
+                    width - shadowInsets.right,
+                    height - shadowInsets.bottom,
+                    width - shadowInsets.right - mCornerRadius,
+                    height - shadowInsets.bottom
             );
         }
 
-        private void moveToBottomLeft(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
-            shadowOutline.moveTo(
-                    shadowInsets.left + mCornerRadius,
-                    shadowLayout.getHeight() - shadowInsets.bottom
-            );
-        }
-
-        private void lineToBottomLeft(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void lineToBottomLeft(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.lineTo(
                     shadowInsets.left + mCornerRadius,
-                    shadowLayout.getHeight() - shadowInsets.bottom
+                    height - shadowInsets.bottom
             );
         }
 
-        private void addBottomLeftCorner(@NonNull ShadowLayout shadowLayout, @NonNull Path shadowOutline, @NonNull RectF shadowInsets) {
+        private void addBottomLeftCorner(@NonNull ShadowPathBuffer shadowOutline, @NonNull RectF shadowInsets, int width, int height) {
             shadowOutline.quadTo(
                     shadowInsets.left,
-                    shadowLayout.getHeight() - shadowInsets.bottom,
+                    height - shadowInsets.bottom,
                     shadowInsets.left,
-                    shadowLayout.getHeight() - shadowInsets.bottom - mCornerRadius
+                    height - shadowInsets.bottom - mCornerRadius
             );
         }
 
         private float calcRealHalfArrowWidth() {
-            double vertexDegrees = calcVertexDegrees();
-            double d = (90.0 - vertexDegrees) / 2.0;
-            float increase = (float) (Math.tan(Math.toRadians(d)) * mArrowRadius);
-            return getHalfArrowWidth() + increase;
+            return mRealHalfArrowWidth;
         }
 
         private double calcVertexDegrees() {
-            if (mArrowHeight <= 0) return 180.0;
-            if (mArrowWidth <= 0) return 0.0;
-            double tan = (mArrowWidth / 2.0) / mArrowHeight;
-            double d = Math.atan(tan);
-            return Math.toDegrees(d);
+            return mVertexDegrees;
         }
 
         private float getHalfArrowWidth() {
@@ -738,58 +844,23 @@ public class PopupShadowLayout extends ShadowLayout {
 
         public float getRealArrowOffset(@NonNull ShadowLayout shadowLayout,
                                         @NonNull RectF shadowInsets) {
+            return calcRealArrowOffset(shadowInsets, shadowLayout.getWidth(), shadowLayout.getHeight());
+        }
+
+        private float calcRealArrowOffset(@NonNull RectF shadowInsets, int width, int height) {
             final float minArrowPadding = mCornerRadius + calcRealHalfArrowWidth();
-            final float minOffset;
-            final float maxOffset;
-            float realOffset;
             switch (mArrowSide) {
                 case ARROW_SIDE_LEFT:
                 case ARROW_SIDE_RIGHT:
-                    minOffset = shadowInsets.top + minArrowPadding;
-                    maxOffset = shadowLayout.getHeight() - shadowInsets.bottom - minArrowPadding;
-                    switch (mArrowAlign) {
-                        case ARROW_ALIGN_CENTER:
-                            realOffset = (minOffset + maxOffset) / 2F + mArrowOffset;
-                            break;
-                        case ARROW_ALIGN_START:
-                            realOffset = minOffset + mArrowOffset;
-                            break;
-                        case ARROW_ALIGN_END:
-                            realOffset = maxOffset - mArrowOffset;
-                            break;
-                        default:
-                            realOffset = 0;
-                            break;
-                    }
-                    realOffset = Math.max(realOffset, minOffset);
-                    realOffset = Math.min(realOffset, maxOffset);
-                    break;
+                    return PopupArrowGeometry.calcRealArrowOffset(mArrowAlign, mArrowOffset, minArrowPadding,
+                            shadowInsets.top, height - shadowInsets.bottom);
                 case ARROW_SIDE_TOP:
                 case ARROW_SIDE_BOTTOM:
-                    minOffset = shadowInsets.left + minArrowPadding;
-                    maxOffset = shadowLayout.getWidth() - shadowInsets.right - minArrowPadding;
-                    switch (mArrowAlign) {
-                        case ARROW_ALIGN_CENTER:
-                            realOffset = (minOffset + maxOffset) / 2F + mArrowOffset;
-                            break;
-                        case ARROW_ALIGN_START:
-                            realOffset = minOffset + mArrowOffset;
-                            break;
-                        case ARROW_ALIGN_END:
-                            realOffset = maxOffset - mArrowOffset;
-                            break;
-                        default:
-                            realOffset = 0;
-                            break;
-                    }
-                    realOffset = Math.max(realOffset, minOffset);
-                    realOffset = Math.min(realOffset, maxOffset);
-                    break;
+                    return PopupArrowGeometry.calcRealArrowOffset(mArrowAlign, mArrowOffset, minArrowPadding,
+                            shadowInsets.left, width - shadowInsets.right);
                 default:
-                    realOffset = 0;
-                    break;
+                    return 0;
             }
-            return realOffset;
         }
 
         @Retention(RetentionPolicy.SOURCE)
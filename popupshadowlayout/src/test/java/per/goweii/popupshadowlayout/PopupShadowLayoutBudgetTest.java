@@ -0,0 +1,139 @@
+package per.goweii.popupshadowlayout;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.AttributeSet;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import per.goweii.shadowlayout.ShadowMetrics;
+import per.goweii.shadowlayout.testing.CountingCanvas;
+import per.goweii.shadowlayout.testing.CountingShadowPaint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 气泡布局一次绘制和一次设置的开销上限，画布是软件绘制的。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, shadows = CountingShadowPaint.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class PopupShadowLayoutBudgetTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+
+    private Context mContext;
+    private CountingCanvas mCanvas;
+
+    @Before
+    public void setUp() {
+        ShadowMetrics.setEnabled(true);
+        // 布局不会挂到窗口上，不需要Activity
+        mContext = RuntimeEnvironment.getApplication();
+        mCanvas = new CountingCanvas(Bitmap.createBitmap(WIDTH * 2, HEIGHT * 2, Bitmap.Config.ARGB_8888));
+        mCanvas.translate(WIDTH / 2F, HEIGHT / 2F);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowMetrics.setEnabled(false);
+    }
+
+    @Test
+    public void arrowShadowUsesOneLayerForShadowAndOneForClip() {
+        CountingPopupShadowLayout layout = inflate("-8dp", "layer");
+        drawSteadyFrame(layout);
+
+        assertEquals(2, mCanvas.getSaveLayerCount());
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 3);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+    }
+
+    @Test
+    public void clipOutEraseOnlyUsesTheClipLayer() {
+        CountingPopupShadowLayout layout = inflate("-8dp", "clipOut");
+        drawSteadyFrame(layout);
+
+        assertEquals(1, mCanvas.getSaveLayerCount());
+        assertEquals(1, mCanvas.getPathClipCount());
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 2);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+    }
+
+    @Test
+    public void arrowChangesRequestLayoutOnlyWhenInsetsChange() {
+        CountingPopupShadowLayout layout = inflate("8dp", "auto");
+        drawSteadyFrame(layout);
+
+        // 箭头位置改变，内边距不变
+        layout.mLayoutRequestCount = 0;
+        layout.setArrowOffset(12);
+        drawFrame(layout);
+        assertEquals(0, layout.mLayoutRequestCount);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+
+        // 箭头换到另一边，同一帧内的多次修改合并为一次
+        layout.mLayoutRequestCount = 0;
+        layout.setArrowSide(PopupShadowLayout.PopupShadowOutlineProvider.ARROW_SIDE_TOP);
+        layout.setArrowOffset(16);
+        drawFrame(layout);
+        assertEquals(1, layout.mLayoutRequestCount);
+    }
+
+    private CountingPopupShadowLayout inflate(String shadowRadius, String shadowErase) {
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowRadius, shadowRadius)
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowColor, "#66000000")
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowErase, shadowErase)
+                .addAttribute(R.attr.popupCornerRadius, "8dp")
+                .addAttribute(R.attr.popupArrowSide, "bottom")
+                .addAttribute(R.attr.popupArrowWidth, "16dp")
+                .addAttribute(R.attr.popupArrowHeight, "8dp")
+                .addAttribute(R.attr.popupArrowRadius, "2dp")
+                .build();
+        CountingPopupShadowLayout layout = new CountingPopupShadowLayout(mContext, attrs);
+        layout.addView(new View(mContext));
+        return layout;
+    }
+
+    /**
+     * 第一帧会构建轮廓和创建对象，画布的计数只包含第二帧。
+     */
+    private void drawSteadyFrame(CountingPopupShadowLayout layout) {
+        drawFrame(layout);
+        drawFrame(layout);
+    }
+
+    private void drawFrame(PopupShadowLayout layout) {
+        layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas.resetCounts();
+        CountingShadowPaint.resetAllocationCount();
+        layout.draw(mCanvas);
+    }
+
+    private static class CountingPopupShadowLayout extends PopupShadowLayout {
+        int mLayoutRequestCount;
+
+        CountingPopupShadowLayout(Context context, AttributeSet attrs) {
+            super(context, attrs);
+        }
+
+        @Override
+        public void requestLayout() {
+            mLayoutRequestCount++;
+            super.requestLayout();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package per.goweii.popupshadowlayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import per.goweii.shadowlayout.ShadowPathBuffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 快照在其他线程构建的轮廓只由快照时的参数决定
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PopupShadowOutlineSnapshotTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+
+    @Test
+    public void snapshotBuildsOutlineOnAnotherThread() throws Exception {
+        PopupShadowLayout.PopupShadowOutlineProvider provider = newProvider();
+        final PopupShadowLayout.PopupShadowOutlineProvider snapshot = provider.snapshot();
+        ShadowPathBuffer expected = new ShadowPathBuffer();
+        assertTrue(provider.buildShadowOutline(expected, WIDTH, HEIGHT));
+
+        // 快照之后修改参数不影响快照
+        provider.setArrowSide(PopupShadowLayout.PopupShadowOutlineProvider.ARROW_SIDE_LEFT);
+        provider.setCornerRadius(4);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ShadowPathBuffer actual = executor.submit(new Callable<ShadowPathBuffer>() {
+                @Override
+                public ShadowPathBuffer call() {
+                    ShadowPathBuffer outline = new ShadowPathBuffer();
+                    snapshot.buildShadowOutline(outline, WIDTH, HEIGHT);
+                    return outline;
+                }
+            }).get();
+            assertTrue(expected.contentEquals(actual));
+        } finally {
+            executor.shutdown();
+        }
+
+        ShadowPathBuffer changed = new ShadowPathBuffer();
+        provider.buildShadowOutline(changed, WIDTH, HEIGHT);
+        assertFalse(expected.contentEquals(changed));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void snapshotIsImmutable() {
+        newProvider().snapshot().setArrowWidth(20);
+    }
+
+    private static PopupShadowLayout.PopupShadowOutlineProvider newProvider() {
+        PopupShadowLayout.PopupShadowOutlineProvider provider = new PopupShadowLayout.PopupShadowOutlineProvider();
+        provider.setArrowSide(PopupShadowLayout.PopupShadowOutlineProvider.ARROW_SIDE_TOP);
+        provider.setArrowWidth(16);
+        provider.setArrowHeight(8);
+        provider.setArrowRadius(2);
+        provider.setCornerRadius(12);
+        return provider;
+    }
+}
@@ -2,6 +2,7 @@ package per.goweii.roundedshadowlayout;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Path;
 import android.graphics.RectF;
 import android.util.AttributeSet;
@@ -10,15 +11,25 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import per.goweii.shadowlayout.ShadowKey;
 import per.goweii.shadowlayout.ShadowLayout;
+import per.goweii.shadowlayout.ShadowPathBuffer;
+import per.goweii.shadowlayout.ShadowPathReceiver;
 
 /**
  * 圆角阴影布局
+ * <p>
+ * 通过{@link RoundedShadowLayout#setRoundedShadowGradient(boolean)}开启后，四个角圆角相同时使用渐变绘制阴影，
+ * 不需要模糊和离屏图层。
  */
 public class RoundedShadowLayout extends ShadowLayout {
     private final RoundedShadowOutlineProvider mRoundedShadowOutlineProvider = new RoundedShadowOutlineProvider();
 
+    private final RectF mShadowRoundRect = new RectF();
+
     private boolean mRoundedCornerRadiusAdaptation = true;
+    private boolean mRoundedShadowGradient = false;
+    private RoundedShadowRenderer mRoundedShadowRenderer = null;
 
     public RoundedShadowLayout(Context context) {
         this(context, null);
@@ -30,11 +41,12 @@ public class RoundedShadowLayout extends ShadowLayout {
 
     public RoundedShadowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        setShadowOutlineProvider(mRoundedShadowOutlineProvider);
+        super.setShadowOutlineProvider(mRoundedShadowOutlineProvider);
         setClipToShadowOutline(true);
         setClipToPadding(false);
         TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.RoundedShadowLayout);
         mRoundedCornerRadiusAdaptation = typedArray.getBoolean(R.styleable.RoundedShadowLayout_roundedCornerRadiusAdaptation, mRoundedCornerRadiusAdaptation);
+        mRoundedShadowGradient = typedArray.getBoolean(R.styleable.RoundedShadowLayout_roundedShadowGradient, mRoundedShadowGradient);
         float cornerRadius = typedArray.getDimension(R.styleable.RoundedShadowLayout_roundedCornerRadius, 0F);
         float cornerRadiusTopLeft = typedArray.getDimension(R.styleable.RoundedShadowLayout_roundedCornerRadiusTopLeft, cornerRadius);
         float cornerRadiusTopRight = typedArray.getDimension(R.styleable.RoundedShadowLayout_roundedCornerRadiusTopRight, cornerRadius);
@@ -64,6 +76,23 @@ public class RoundedShadowLayout extends ShadowLayout {
         return radiusTop + radiusBottom + super.getSuggestedMinimumHeight();
     }
 
+    @Override
+    protected void drawShadow(@NonNull Canvas canvas) {
+        if (mRoundedShadowGradient && hasShadow() && !isInEditMode()) {
+            float cornerRadius = getShadowOutlineRoundRect(mShadowRoundRect);
+            if (cornerRadius >= 0) {
+                if (mRoundedShadowRenderer == null) {
+                    mRoundedShadowRenderer = new RoundedShadowRenderer();
+                }
+                if (mRoundedShadowRenderer.draw(canvas, getShadowOutline(), mShadowRoundRect, cornerRadius,
+                        getShadowRadius(), getShadowOffsetX(), getShadowOffsetY(), getShadowColor())) {
+                    return;
+                }
+            }
+        }
+        super.drawShadow(canvas);
+    }
+
     @NonNull
     @Override
     public RoundedShadowOutlineProvider getShadowOutlineProvider() {
@@ -115,6 +144,20 @@ public class RoundedShadowLayout extends ShadowLayout {
         }
     }
 
+    public boolean isRoundedShadowGradient() {
+        return mRoundedShadowGradient;
+    }
+
+    /**
+     * 开启后四个角圆角相同时使用渐变绘制阴影，耗时和阴影半径无关；圆角不同或布局太小时仍然使用模糊绘制。
+     */
+    public void setRoundedShadowGradient(boolean roundedShadowGradient) {
+        if (mRoundedShadowGradient != roundedShadowGradient) {
+            mRoundedShadowGradient = roundedShadowGradient;
+            invalidate();
+        }
+    }
+
     public void setCornerRadius(float cornerRadius) {
         setCornerRadius(cornerRadius, cornerRadius, cornerRadius, cornerRadius);
     }
@@ -126,19 +169,139 @@ public class RoundedShadowLayout extends ShadowLayout {
     public static class RoundedShadowOutlineProvider extends ShadowOutlineProvider {
         private final RectF mRoundRect = new RectF();
         private final float[] mRoundRadius = new float[8];
+        private final ShadowPathBuffer mOutlineBuffer = new ShadowPathBuffer();
+        private final ShadowPathReceiver mPathReceiver = new ShadowPathReceiver();
+        private final boolean mSnapshot;
+
+        public RoundedShadowOutlineProvider() {
+            mSnapshot = false;
+        }
+
+        private RoundedShadowOutlineProvider(@NonNull RoundedShadowOutlineProvider source) {
+            System.arraycopy(source.mRoundRadius, 0, mRoundRadius, 0, mRoundRadius.length);
+            mSnapshot = true;
+        }
 
         @Override
         public void buildShadowOutline(@NonNull ShadowLayout shadowLayout,
                                        @NonNull Path shadowOutline,
                                        @NonNull RectF shadowInsets) {
+            buildShadowOutline(shadowLayout, shadowOutline, shadowInsets,
+                    shadowLayout.getWidth(), shadowLayout.getHeight());
+        }
+
+        @Override
+        public void buildShadowOutline(@NonNull ShadowLayout shadowLayout,
+                                       @NonNull Path shadowOutline,
+                                       @NonNull RectF shadowInsets,
+                                       int width,
+                                       int height) {
+            mOutlineBuffer.reset();
+            buildShadowOutline(shadowLayout, mOutlineBuffer, shadowInsets, width, height);
+            mPathReceiver.replay(mOutlineBuffer, shadowOutline);
+        }
+
+        @Override
+        public boolean buildShadowOutline(@NonNull ShadowLayout shadowLayout,
+                                          @NonNull ShadowPathBuffer shadowOutline,
+                                          @NonNull RectF shadowInsets,
+                                          int width,
+                                          int height) {
+            if (shadowLayout.isInnerShadow()) {
+                shadowOutline.addRoundRect(Math.max(shadowInsets.left, 0), Math.max(shadowInsets.top, 0),
+                        width - Math.max(shadowInsets.right, 0),
+                        height - Math.max(shadowInsets.bottom, 0),
+                        mRoundRadius);
+            } else {
+                buildShadowOutline(shadowOutline, width, height);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean buildShadowOutline(@NonNull ShadowPathBuffer shadowOutline,
+                                          int width,
+                                          int height) {
+            shadowOutline.addRoundRect(0, 0, width, height, mRoundRadius);
+            return true;
+        }
+
+        /**
+         * 圆角矩形只有四个角不同，两条圆角之间的边都可以拉伸。
+         */
+        @Override
+        public boolean getShadowStretchMargins(@NonNull ShadowLayout shadowLayout,
+                                               @NonNull RectF shadowInsets,
+                                               @NonNull RectF stretchMargins) {
+            final int width = shadowLayout.getWidth();
+            final int height = shadowLayout.getHeight();
+            calcRoundRect(shadowLayout, shadowInsets, width, height, mRoundRect);
+            stretchMargins.set(
+                    mRoundRect.left + Math.max(getTopLeftCornerRadiusX(), getBottomLeftCornerRadiusX()),
+                    mRoundRect.top + Math.max(getTopLeftCornerRadiusY(), getTopRightCornerRadiusY()),
+                    width - mRoundRect.right + Math.max(getTopRightCornerRadiusX(), getBottomRightCornerRadiusX()),
+                    height - mRoundRect.bottom + Math.max(getBottomLeftCornerRadiusY(), getBottomRightCornerRadiusY())
+            );
+            return true;
+        }
+
+        @Override
+        public float getShadowOutlineRoundRect(@NonNull ShadowLayout shadowLayout,
+                                               @NonNull RectF shadowInsets,
+                                               @NonNull RectF roundRect) {
+            if (!areCornersRadiusSame()) {
+                return -1F;
+            }
+            calcRoundRect(shadowLayout, shadowInsets, shadowLayout.getWidth(), shadowLayout.getHeight(), roundRect);
+            return mRoundRadius[0];
+        }
+
+        @Override
+        public float getShadowOutlineRoundRect(int width,
+                                               int height,
+                                               @NonNull RectF roundRect) {
+            if (!areCornersRadiusSame()) {
+                return -1F;
+            }
+            roundRect.set(0, 0, width, height);
+            return mRoundRadius[0];
+        }
+
+        private void calcRoundRect(@NonNull ShadowLayout shadowLayout,
+                                   @NonNull RectF shadowInsets,
+                                   int width,
+                                   int height,
+                                   @NonNull RectF roundRect) {
             if (shadowLayout.isInnerShadow()) {
-                mRoundRect.set(Math.max(shadowInsets.left, 0), Math.max(shadowInsets.top, 0),
-                        shadowLayout.getWidth() - Math.max(shadowInsets.right, 0),
-                        shadowLayout.getHeight() - Math.max(shadowInsets.bottom, 0));
+                roundRect.set(Math.max(shadowInsets.left, 0), Math.max(shadowInsets.top, 0),
+                        width - Math.max(shadowInsets.right, 0),
+                        height - Math.max(shadowInsets.bottom, 0));
             } else {
-                mRoundRect.set(0, 0, shadowLayout.getWidth(), shadowLayout.getHeight());
+                roundRect.set(0, 0, width, height);
+            }
+        }
+
+        @Override
+        public boolean buildShadowOutlineKey(@NonNull ShadowLayout shadowLayout,
+                                             @NonNull ShadowKey.Builder builder) {
+            return buildShadowOutlineKey(builder);
+        }
+
+        @Override
+        public boolean buildShadowOutlineKey(@NonNull ShadowKey.Builder builder) {
+            for (float radius : mRoundRadius) {
+                builder.append(radius);
             }
-            shadowOutline.addRoundRect(mRoundRect, mRoundRadius, Path.Direction.CW);
+            return true;
+        }
+
+        /**
+         * 只复制圆角半径，不依赖布局的轮廓只由圆角半径决定。
+         */
+        @NonNull
+        @Override
+        public RoundedShadowOutlineProvider snapshot() {
+            return new RoundedShadowOutlineProvider(this);
         }
 
         public float getTopLeftCornerRadius() {
@@ -183,6 +346,9 @@ public class RoundedShadowLayout extends ShadowLayout {
         }
 
         public void setCornerRadius(float topLeft, float topRight, float bottomRight, float bottomLeft) {
+            if (mSnapshot) {
+                throw new IllegalStateException("Snapshot is immutable");
+            }
             topLeft = Math.max(topLeft, 0F);
             topRight = Math.max(topRight, 0F);
             bottomRight = Math.max(bottomRight, 0F);
@@ -0,0 +1,180 @@
+package per.goweii.roundedshadowlayout;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RadialGradient;
+import android.graphics.Region;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import per.goweii.shadowlayout.ShadowAnalyticBlur;
+import per.goweii.shadowlayout.ShadowBlurEngine;
+import per.goweii.shadowlayout.ShadowRenderer;
+
+/**
+ * 渐变圆角阴影渲染器
+ * <p>
+ * 和CardView类似，四个角使用{@link RadialGradient}，四条边使用{@link LinearGradient}，中间使用纯色，
+ * 不需要模糊也不需要离屏图层，耗时和阴影半径无关。
+ * 渐变的透明度按高斯模糊后边缘的分布取值，和模糊绘制的结果尽量接近。
+ * <p>
+ * 只支持四个角圆角相同的圆角矩形，渐变只在阴影参数改变时重新创建。
+ */
+final class RoundedShadowRenderer {
+    private static final int STOP_COUNT = 7;
+    private static final float EXTENT_SIGMAS = 3F;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mShadowRect = new RectF();
+    private final int[] mColors = new int[STOP_COUNT];
+    private final int[] mReverseColors = new int[STOP_COUNT];
+    private final float[] mPositions = new float[STOP_COUNT];
+
+    private Shader mCornerShader = null;
+    private Shader mEdgeShader = null;
+    private float mCornerSize = -1F;
+    private float mExtent = -1F;
+    private int mColor = 0;
+
+    /**
+     * 绘制roundRect按偏移移动后的阴影，并裁剪掉shadowOutline内部。
+     * 圆角矩形太小、放不下渐变时返回false，需要使用模糊绘制。
+     */
+    boolean draw(@NonNull Canvas canvas,
+                 @NonNull Path shadowOutline,
+                 @NonNull RectF roundRect,
+                 float cornerRadius,
+                 float shadowRadius,
+                 float shadowOffsetX,
+                 float shadowOffsetY,
+                 int shadowColor) {
+        final float sigma = ShadowBlurEngine.convertRadiusToSigma(ShadowRenderer.calcBlurRadius(shadowRadius));
+        if (sigma <= 0) {
+            return false;
+        }
+        final float extent = sigma * EXTENT_SIGMAS;
+        // 圆角小于渐变宽度时按渐变宽度处理，保证角和边的渐变可以衔接
+        final float cornerSize = Math.max(cornerRadius, extent);
+        final float width = roundRect.width();
+        final float height = roundRect.height();
+        if (cornerSize * 2 > width || cornerSize * 2 > height) {
+            return false;
+        }
+        ensureShaders(sigma, extent, cornerSize, shadowColor);
+
+        mShadowRect.set(roundRect);
+        mShadowRect.offset(shadowOffsetX, shadowOffsetY);
+        final float left = mShadowRect.left;
+        final float top = mShadowRect.top;
+        final float right = mShadowRect.right;
+        final float bottom = mShadowRect.bottom;
+        final float edgeWidth = width - cornerSize * 2;
+        final float edgeHeight = height - cornerSize * 2;
+
+        int saveCount = canvas.save();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            canvas.clipOutPath(shadowOutline);
+        } else {
+            canvas.clipPath(shadowOutline, Region.Op.DIFFERENCE);
+        }
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setColor(Color.BLACK);
+
+        mPaint.setShader(mCornerShader);
+        drawCorner(canvas, left + cornerSize, top + cornerSize, 0, cornerSize + extent);
+        drawCorner(canvas, right - cornerSize, top + cornerSize, 90, cornerSize + extent);
+        drawCorner(canvas, right - cornerSize, bottom - cornerSize, 180, cornerSize + extent);
+        drawCorner(canvas, left + cornerSize, bottom - cornerSize, 270, cornerSize + extent);
+
+        mPaint.setShader(mEdgeShader);
+        drawEdge(canvas, left + cornerSize, top, 0, edgeWidth, extent, cornerSize);
+        drawEdge(canvas, right, top + cornerSize, 90, edgeHeight, extent, cornerSize);
+        drawEdge(canvas, right - cornerSize, bottom, 180, edgeWidth, extent, cornerSize);
+        drawEdge(canvas, left, bottom - cornerSize, 270, edgeHeight, extent, cornerSize);
+
+        mPaint.setShader(null);
+        mPaint.setColor(mColors[0]);
+        if (edgeWidth > 0 && edgeHeight > 0) {
+            canvas.drawRect(left + cornerSize, top + cornerSize, right - cornerSize, bottom - cornerSize, mPaint);
+        }
+        canvas.restoreToCount(saveCount);
+        return true;
+    }
+
+    /**
+     * 在以(cx, cy)为圆心的象限中绘制角，degrees为0时是左上角。
+     */
+    private void drawCorner(@NonNull Canvas canvas, float cx, float cy, float degrees, float size) {
+        int saveCount = canvas.save();
+        canvas.translate(cx, cy);
+        canvas.rotate(degrees);
+        canvas.drawRect(-size, -size, 0, 0, mPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 绘制从(x, y)开始的边，degrees为0时是上边，边的外侧朝向-y。
+     */
+    private void drawEdge(@NonNull Canvas canvas, float x, float y, float degrees,
+                          float length, float extent, float depth) {
+        if (length <= 0) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(x, y);
+        canvas.rotate(degrees);
+        canvas.drawRect(0, -extent, length, depth, mPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void ensureShaders(float sigma, float extent, float cornerSize, int shadowColor) {
+        if (mCornerShader != null
+                && mExtent == extent
+                && mCornerSize == cornerSize
+                && mColor == shadowColor) {
+            return;
+        }
+        mExtent = extent;
+        mCornerSize = cornerSize;
+        mColor = shadowColor;
+
+        // 从边缘内侧extent处到外侧extent处的透明度分布
+        final int alpha = Color.alpha(shadowColor);
+        final int red = Color.red(shadowColor);
+        final int green = Color.green(shadowColor);
+        final int blue = Color.blue(shadowColor);
+        for (int i = 0; i < STOP_COUNT; i++) {
+            final float distance = -extent + extent * 2 * i / (STOP_COUNT - 1);
+            final float coverage = 1F - calcEdgeCoverage(distance / sigma);
+            mColors[i] = Color.argb(Math.round(alpha * coverage), red, green, blue);
+            mReverseColors[STOP_COUNT - 1 - i] = mColors[i];
+        }
+
+        final float cornerRadius = cornerSize + extent;
+        for (int i = 0; i < STOP_COUNT; i++) {
+            final float distance = -extent + extent * 2 * i / (STOP_COUNT - 1);
+            mPositions[i] = (cornerSize + distance) / cornerRadius;
+        }
+        mCornerShader = new RadialGradient(0, 0, cornerRadius,
+                mColors, mPositions, Shader.TileMode.CLAMP);
+
+        for (int i = 0; i < STOP_COUNT; i++) {
+            mPositions[i] = (float) i / (STOP_COUNT - 1);
+        }
+        mEdgeShader = new LinearGradient(0, -extent, 0, extent,
+                mReverseColors, mPositions, Shader.TileMode.CLAMP);
+    }
+
+    /**
+     * 高斯模糊后直边外侧x个sigma处被覆盖的比例，即标准正态分布的累积分布函数。
+     */
+    private static float calcEdgeCoverage(float x) {
+        return 0.5F * (1F + ShadowAnalyticBlur.erf(x / (float) Math.sqrt(2)));
+    }
+}
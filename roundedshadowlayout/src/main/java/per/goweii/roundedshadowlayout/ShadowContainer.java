@@ -0,0 +1,347 @@
+package per.goweii.roundedshadowlayout;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import per.goweii.shadowlayout.ShadowCache;
+import per.goweii.shadowlayout.ShadowLayout;
+import per.goweii.shadowlayout.ShadowMaskCache;
+import per.goweii.shadowlayout.ShadowMemoryTrimmer;
+
+/**
+ * 为所有直接子控件绘制圆角外阴影的容器
+ * <p>
+ * 子控件通过{@link LayoutParams}（布局属性layout_shadowRadius等）声明自己的阴影，
+ * 容器在{@link #dispatchDraw(Canvas)}中先一次性绘制所有阴影，再绘制子控件，
+ * 不需要为每个子控件嵌套一层{@link ShadowLayout}，也不需要离屏图层。
+ * <p>
+ * 阴影蒙版通过{@link ShadowCache}共享，尺寸和阴影参数相同的子控件只会渲染一次。
+ * 完全被不透明的子控件遮挡或者在画布之外的阴影会被跳过。
+ * <p>
+ * 所有阴影都绘制在所有子控件之下，子控件之间有重叠时后面子控件的阴影不会覆盖前面的子控件。
+ */
+public class ShadowContainer extends FrameLayout {
+    // 所有子控件共用，绘制每个子控件的阴影前设置它的圆角
+    private final RoundedShadowLayout.RoundedShadowOutlineProvider mShadowOutlineProvider =
+            new RoundedShadowLayout.RoundedShadowOutlineProvider();
+    private final Paint mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final RectF mShadowExtent = new RectF();
+    private final RectF mChildRect = new RectF();
+
+    private final ViewTreeObserver.OnPreDrawListener mOnPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            checkChildrenTransform();
+            return true;
+        }
+    };
+
+    private int mShadowBlur = ShadowLayout.SHADOW_BLUR_PLATFORM;
+
+    public ShadowContainer(Context context) {
+        this(context, null);
+    }
+
+    public ShadowContainer(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ShadowContainer(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        ShadowMemoryTrimmer.register(context);
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ShadowContainer);
+        mShadowBlur = typedArray.getInt(R.styleable.ShadowContainer_shadowBlur, mShadowBlur);
+        typedArray.recycle();
+    }
+
+    /**
+     * 设置阴影的模糊方式，同{@link ShadowLayout#setShadowBlur(int)}。
+     * 阴影总是渲染为蒙版位图后绘制，{@link ShadowLayout#SHADOW_BLUR_ANALYTIC}对所有子控件都可以直接计算。
+     */
+    public void setShadowBlur(@ShadowLayout.ShadowBlur int shadowBlur) {
+        if (mShadowBlur != shadowBlur) {
+            mShadowBlur = shadowBlur;
+            invalidate();
+        }
+    }
+
+    @ShadowLayout.ShadowBlur
+    public int getShadowBlur() {
+        return mShadowBlur;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnPreDrawListener(mOnPreDrawListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnPreDrawListener(mOnPreDrawListener);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        if (child.getLayoutParams() instanceof LayoutParams) {
+            ((LayoutParams) child.getLayoutParams()).releaseShadow();
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = getChildAt(i);
+            if (child.getVisibility() != VISIBLE || child.getAlpha() <= 0F) {
+                continue;
+            }
+            if (!(child.getLayoutParams() instanceof LayoutParams)) {
+                continue;
+            }
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.hasShadow()) {
+                lp.updateTransform(child);
+                drawChildShadow(canvas, child, lp);
+            }
+        }
+        super.dispatchDraw(canvas);
+    }
+
+    private void drawChildShadow(@NonNull Canvas canvas, @NonNull View child, @NonNull LayoutParams lp) {
+        final int width = child.getWidth();
+        final int height = child.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        ShadowMaskCache.calcShadowExtent(lp.shadowRadius, lp.shadowOffsetX, lp.shadowOffsetY,
+                width, height, mShadowExtent);
+        mChildRect.set(mShadowExtent);
+        if (!child.hasIdentityMatrix()) {
+            child.getMatrix().mapRect(mChildRect);
+        }
+        mChildRect.offset(child.getLeft(), child.getTop());
+        if (quickReject(canvas, mChildRect) || isShadowOccluded(child, mChildRect)) {
+            return;
+        }
+        final Bitmap bitmap = obtainShadowBitmap(lp, width, height);
+        if (bitmap == null) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(child.getLeft(), child.getTop());
+        if (!child.hasIdentityMatrix()) {
+            canvas.concat(child.getMatrix());
+        }
+        final int color = lp.shadowColor;
+        final int alpha = Math.round(Color.alpha(color) * Math.min(child.getAlpha(), 1F));
+        mShadowPaint.setColor(Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color)));
+        canvas.drawBitmap(bitmap, mShadowExtent.left, mShadowExtent.top, mShadowPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 带EdgeType的重载在API 30废弃，新版本使用只传范围的重载，按抗锯齿的边缘判断，和{@link Canvas.EdgeType#AA}一致。
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean quickReject(@NonNull Canvas canvas, @NonNull RectF rect) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return canvas.quickReject(rect);
+        }
+        return canvas.quickReject(rect, Canvas.EdgeType.AA);
+    }
+
+    /**
+     * 阴影完全落在某个不透明且没有变换的子控件内时返回true。
+     */
+    private boolean isShadowOccluded(@NonNull View child, @NonNull RectF shadowRect) {
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View other = getChildAt(i);
+            if (other == child
+                    || other.getVisibility() != VISIBLE
+                    || !other.isOpaque()
+                    || other.getAlpha() < 1F
+                    || !other.hasIdentityMatrix()) {
+                continue;
+            }
+            if (other.getLeft() <= shadowRect.left
+                    && other.getTop() <= shadowRect.top
+                    && other.getRight() >= shadowRect.right
+                    && other.getBottom() >= shadowRect.bottom) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 圆角不超过子控件短边的一半，圆角相同的子控件通过{@link ShadowCache}共享蒙版。
+     */
+    @Nullable
+    private Bitmap obtainShadowBitmap(@NonNull LayoutParams lp, int width, int height) {
+        mShadowOutlineProvider.setCornerRadius(Math.min(lp.shadowCornerRadius, Math.min(width, height) / 2F));
+        if (lp.mShadowMaskCache == null) {
+            lp.mShadowMaskCache = new ShadowMaskCache();
+        }
+        return lp.mShadowMaskCache.obtain(mShadowOutlineProvider, width, height,
+                lp.shadowRadius, lp.shadowOffsetX, lp.shadowOffsetY, mShadowBlur, mShadowExtent);
+    }
+
+    /**
+     * 子控件的平移、缩放和透明度等属性动画只会更新子控件自身的显示列表，
+     * 在绘制前检查这些属性，改变时重新绘制容器让阴影跟随。
+     */
+    private void checkChildrenTransform() {
+        boolean changed = false;
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = getChildAt(i);
+            if (!(child.getLayoutParams() instanceof LayoutParams)) {
+                continue;
+            }
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.hasShadow() && lp.updateTransform(child)) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams lp) {
+        if (lp instanceof LayoutParams) {
+            return new LayoutParams((LayoutParams) lp);
+        } else if (lp instanceof FrameLayout.LayoutParams) {
+            return new LayoutParams((FrameLayout.LayoutParams) lp);
+        } else if (lp instanceof MarginLayoutParams) {
+            return new LayoutParams((MarginLayoutParams) lp);
+        }
+        return new LayoutParams(lp);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    /**
+     * 子控件的阴影参数，和{@link ShadowLayout}的含义相同，阴影半径总是按外阴影处理。
+     * 修改后需要调用子控件的{@link View#setLayoutParams(ViewGroup.LayoutParams)}或者容器的{@link #invalidate()}。
+     */
+    public static class LayoutParams extends FrameLayout.LayoutParams {
+        public float shadowRadius = 0F;
+        @ColorInt
+        public int shadowColor = Color.TRANSPARENT;
+        public float shadowOffsetX = 0F;
+        public float shadowOffsetY = 0F;
+        public float shadowCornerRadius = 0F;
+
+        private ShadowMaskCache mShadowMaskCache = null;
+        private float mLastX = Float.NaN;
+        private float mLastY = Float.NaN;
+        private float mLastAlpha = Float.NaN;
+        private float mLastScaleX = Float.NaN;
+        private float mLastScaleY = Float.NaN;
+        private float mLastRotation = Float.NaN;
+
+        public LayoutParams(@NonNull Context c, @Nullable AttributeSet attrs) {
+            super(c, attrs);
+            TypedArray typedArray = c.obtainStyledAttributes(attrs, R.styleable.ShadowContainer_Layout);
+            shadowRadius = typedArray.getDimension(R.styleable.ShadowContainer_Layout_layout_shadowRadius, shadowRadius);
+            shadowColor = typedArray.getColor(R.styleable.ShadowContainer_Layout_layout_shadowColor, shadowColor);
+            shadowOffsetX = typedArray.getDimension(R.styleable.ShadowContainer_Layout_layout_shadowOffsetX, shadowOffsetX);
+            shadowOffsetY = typedArray.getDimension(R.styleable.ShadowContainer_Layout_layout_shadowOffsetY, shadowOffsetY);
+            shadowCornerRadius = typedArray.getDimension(R.styleable.ShadowContainer_Layout_layout_shadowCornerRadius, shadowCornerRadius);
+            typedArray.recycle();
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(@NonNull ViewGroup.LayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(@NonNull MarginLayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(@NonNull FrameLayout.LayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(@NonNull LayoutParams source) {
+            super(source);
+            shadowRadius = source.shadowRadius;
+            shadowColor = source.shadowColor;
+            shadowOffsetX = source.shadowOffsetX;
+            shadowOffsetY = source.shadowOffsetY;
+            shadowCornerRadius = source.shadowCornerRadius;
+        }
+
+        public boolean hasShadow() {
+            return shadowRadius != 0F && Color.alpha(shadowColor) != 0;
+        }
+
+        private boolean updateTransform(@NonNull View child) {
+            final float x = child.getX();
+            final float y = child.getY();
+            final float alpha = child.getAlpha();
+            final float scaleX = child.getScaleX();
+            final float scaleY = child.getScaleY();
+            final float rotation = child.getRotation();
+            if (x == mLastX && y == mLastY && alpha == mLastAlpha
+                    && scaleX == mLastScaleX && scaleY == mLastScaleY && rotation == mLastRotation) {
+                return false;
+            }
+            mLastX = x;
+            mLastY = y;
+            mLastAlpha = alpha;
+            mLastScaleX = scaleX;
+            mLastScaleY = scaleY;
+            mLastRotation = rotation;
+            return true;
+        }
+
+        private void releaseShadow() {
+            mShadowMaskCache = null;
+            mLastX = Float.NaN;
+            mLastY = Float.NaN;
+            mLastAlpha = Float.NaN;
+            mLastScaleX = Float.NaN;
+            mLastScaleY = Float.NaN;
+            mLastRotation = Float.NaN;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package per.goweii.roundedshadowlayout;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.AttributeSet;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import per.goweii.shadowlayout.ShadowMetrics;
+import per.goweii.shadowlayout.testing.CountingCanvas;
+import per.goweii.shadowlayout.testing.CountingShadowPaint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 圆角布局一次绘制和一次设置的开销上限，画布是软件绘制的。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, shadows = CountingShadowPaint.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class RoundedShadowLayoutBudgetTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+
+    private Context mContext;
+    private CountingCanvas mCanvas;
+
+    @Before
+    public void setUp() {
+        ShadowMetrics.setEnabled(true);
+        // 布局不会挂到窗口上，不需要Activity
+        mContext = RuntimeEnvironment.getApplication();
+        mCanvas = new CountingCanvas(Bitmap.createBitmap(WIDTH * 2, HEIGHT * 2, Bitmap.Config.ARGB_8888));
+        mCanvas.translate(WIDTH / 2F, HEIGHT / 2F);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowMetrics.setEnabled(false);
+    }
+
+    @Test
+    public void blurredShadowUsesOneLayerForShadowAndOneForClip() {
+        CountingRoundedShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowRadius, "-8dp")
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowColor, "#66000000")
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowErase, "layer")
+                .addAttribute(R.attr.roundedCornerRadius, "16dp")
+                .build());
+        drawSteadyFrame(layout);
+
+        assertEquals(2, mCanvas.getSaveLayerCount());
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 3);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+    }
+
+    @Test
+    public void gradientShadowNeedsNoShadowLayer() {
+        CountingRoundedShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowRadius, "-8dp")
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowColor, "#66000000")
+                .addAttribute(R.attr.roundedCornerRadius, "16dp")
+                .addAttribute(R.attr.roundedShadowGradient, "true")
+                .build());
+        drawSteadyFrame(layout);
+
+        // 只有裁剪内容的图层，渐变阴影只裁剪掉一次轮廓
+        assertEquals(1, mCanvas.getSaveLayerCount());
+        assertEquals(1, mCanvas.getPathClipCount());
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 1);
+        assertEquals(0, mCanvas.getBitmapDrawCount());
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+    }
+
+    @Test
+    public void cornerRadiusChangeDoesNotRequestLayout() {
+        CountingRoundedShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowRadius, "8dp")
+                .addAttribute(per.goweii.shadowlayout.R.attr.shadowColor, "#66000000")
+                .addAttribute(R.attr.roundedCornerRadius, "16dp")
+                .build());
+        drawSteadyFrame(layout);
+        layout.mLayoutRequestCount = 0;
+
+        // 轮廓改变但内边距不变
+        layout.setCornerRadius(24F);
+        drawFrame(layout);
+        assertEquals(0, layout.mLayoutRequestCount);
+    }
+
+    private CountingRoundedShadowLayout inflate(AttributeSet attrs) {
+        CountingRoundedShadowLayout layout = new CountingRoundedShadowLayout(mContext, attrs);
+        layout.addView(new View(mContext));
+        return layout;
+    }
+
+    /**
+     * 第一帧会构建轮廓和创建对象，画布的计数只包含第二帧。
+     */
+    private void drawSteadyFrame(CountingRoundedShadowLayout layout) {
+        drawFrame(layout);
+        drawFrame(layout);
+    }
+
+    private void drawFrame(RoundedShadowLayout layout) {
+        layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas.resetCounts();
+        CountingShadowPaint.resetAllocationCount();
+        layout.draw(mCanvas);
+    }
+
+    private static class CountingRoundedShadowLayout extends RoundedShadowLayout {
+        int mLayoutRequestCount;
+
+        CountingRoundedShadowLayout(Context context, AttributeSet attrs) {
+            super(context, attrs);
+        }
+
+        @Override
+        public void requestLayout() {
+            mLayoutRequestCount++;
+            super.requestLayout();
+        }
+    }
+}
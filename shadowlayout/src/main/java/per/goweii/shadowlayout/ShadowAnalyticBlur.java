@@ -0,0 +1,148 @@
+package per.goweii.shadowlayout;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 纯Java实现的圆角矩形阴影解析计算
+ * <p>
+ * 矩形经过高斯模糊后的结果可以用误差函数直接表示：水平方向对每一行求出圆角处的实际宽度后用erf积分，
+ * 竖直方向在3个sigma范围内取固定的几个采样点加权求和，采样范围没有经过圆角的行只需要计算一次。
+ * 每个像素的计算量固定，和模糊半径无关，也不需要先绘制再迭代模糊。
+ * erf通过预先计算的查找表线性插值得到。
+ * <p>
+ * 实例不是线程安全的，每个线程需要持有自己的实例。
+ */
+public final class ShadowAnalyticBlur {
+    private static final int SAMPLES = 8;
+    private static final float SAMPLE_SIGMAS = 3F;
+
+    private static final float ERF_RANGE = 4F;
+    private static final int ERF_TABLE_SIZE = 1024;
+    private static final float ERF_SCALE = ERF_TABLE_SIZE / (ERF_RANGE * 2);
+    private static final float[] ERF_TABLE = new float[ERF_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= ERF_TABLE_SIZE; i++) {
+            ERF_TABLE[i] = (float) calcErf(i / ERF_SCALE - ERF_RANGE);
+        }
+    }
+
+    private final float[] mSampleWeights = new float[SAMPLES];
+    private final float[] mSampleCurved = new float[SAMPLES];
+
+    /**
+     * 误差函数，超出查找表范围时为±1。
+     */
+    public static float erf(float x) {
+        float index = (x + ERF_RANGE) * ERF_SCALE;
+        if (index <= 0) {
+            return -1F;
+        }
+        if (index >= ERF_TABLE_SIZE) {
+            return 1F;
+        }
+        int i = (int) index;
+        float fraction = index - i;
+        return ERF_TABLE[i] + (ERF_TABLE[i + 1] - ERF_TABLE[i]) * fraction;
+    }
+
+    /**
+     * 将圆角矩形模糊后的透明度（0~255）写入蒙版，蒙版的像素(x, y)的中心对应坐标(x + 0.5, y + 0.5)。
+     */
+    public void render(@NonNull byte[] mask, int offset, int width, int height, int stride,
+                       float left, float top, float right, float bottom,
+                       float cornerRadius, float sigma) {
+        final float centerX = (left + right) * 0.5F;
+        final float centerY = (top + bottom) * 0.5F;
+        final float halfWidth = (right - left) * 0.5F;
+        final float halfHeight = (bottom - top) * 0.5F;
+        if (halfWidth <= 0 || halfHeight <= 0) {
+            for (int y = 0; y < height; y++) {
+                final int rowStart = offset + y * stride;
+                for (int x = 0; x < width; x++) {
+                    mask[rowStart + x] = 0;
+                }
+            }
+            return;
+        }
+        final float corner = Math.min(Math.max(cornerRadius, 0F), Math.min(halfWidth, halfHeight));
+        if (sigma <= 0) {
+            sigma = 0.01F;
+        }
+        // 按像素中心取值，补上一个像素宽的盒式采样的方差，和先光栅化再模糊的结果一致
+        sigma = (float) Math.sqrt(sigma * sigma + 1F / 12F);
+        final float erfScale = (float) Math.sqrt(0.5) / sigma;
+        for (int y = 0; y < height; y++) {
+            final float py = y + 0.5F - centerY;
+            final int samples = prepareRow(py, halfWidth, halfHeight, corner, sigma);
+            final int rowStart = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                final float px = x + 0.5F - centerX;
+                float value = 0F;
+                for (int i = 0; i < samples; i++) {
+                    final float curved = mSampleCurved[i];
+                    final float coverage = erf((px + curved) * erfScale) - erf((px - curved) * erfScale);
+                    value += coverage * mSampleWeights[i];
+                }
+                int alpha = (int) (value * 0.5F * 255F + 0.5F);
+                mask[rowStart + x] = (byte) (alpha < 0 ? 0 : (alpha > 255 ? 255 : alpha));
+            }
+        }
+    }
+
+    /**
+     * 计算一行的竖直采样点：每个采样点所在行的圆角处半宽和对应的高斯权重，返回采样点数量。
+     * 所有采样点都在直边范围内时半宽相同，合并为一个采样点。
+     */
+    private int prepareRow(float py, float halfWidth, float halfHeight, float corner, float sigma) {
+        final float low = py - halfHeight;
+        final float high = py + halfHeight;
+        final float start = clamp(-SAMPLE_SIGMAS * sigma, low, high);
+        final float end = clamp(SAMPLE_SIGMAS * sigma, low, high);
+        if (end <= start) {
+            return 0;
+        }
+        final float step = (end - start) / SAMPLES;
+        final float gaussianScale = (float) (1.0 / (Math.sqrt(2.0 * Math.PI) * sigma));
+        float offsetY = start + step * 0.5F;
+        float totalWeight = 0F;
+        boolean curved = false;
+        for (int i = 0; i < SAMPLES; i++) {
+            final float sampleY = py - offsetY;
+            final float delta = Math.min(halfHeight - corner - Math.abs(sampleY), 0F);
+            mSampleCurved[i] = halfWidth - corner + (float) Math.sqrt(Math.max(0F, corner * corner - delta * delta));
+            mSampleWeights[i] = (float) Math.exp(-offsetY * offsetY / (2F * sigma * sigma)) * gaussianScale * step;
+            totalWeight += mSampleWeights[i];
+            curved |= delta < 0F;
+            offsetY += step;
+        }
+        if (!curved) {
+            mSampleCurved[0] = halfWidth;
+            mSampleWeights[0] = totalWeight;
+            return 1;
+        }
+        return SAMPLES;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    /**
+     * 用于生成查找表的高精度误差函数，最大误差约1.2e-7。
+     */
+    private static double calcErf(double x) {
+        final double t = 1.0 / (1.0 + 0.5 * Math.abs(x));
+        final double tau = t * Math.exp(-x * x - 1.26551223
+                + t * (1.00002368
+                + t * (0.37409196
+                + t * (0.09678418
+                + t * (-0.18628806
+                + t * (0.27886807
+                + t * (-1.13520398
+                + t * (1.48851587
+                + t * (-0.82215223
+                + t * 0.17087277)))))))));
+        return x >= 0 ? 1.0 - tau : tau - 1.0;
+    }
+}
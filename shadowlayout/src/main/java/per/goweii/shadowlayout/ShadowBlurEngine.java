@@ -0,0 +1,232 @@
+package per.goweii.shadowlayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * 纯Java实现的阴影蒙版模糊
+ * <p>
+ * 直接处理{@code byte[]}或{@code int[]}形式的透明度蒙版（每个元素为0~255），支持可分离的高斯模糊和3次盒式模糊近似。
+ * 卷积核和行缓冲会在实例中复用，除了首次遇到更大的尺寸外，每次调用都不会产生分配。
+ * 蒙版以外的像素视为完全透明。
+ * <p>
+ * 实例不是线程安全的，每个线程需要持有自己的实例。
+ */
+public final class ShadowBlurEngine {
+    public static final int MODE_GAUSSIAN = 0;
+    public static final int MODE_BOX = 1;
+
+    @VisibleForTesting
+    static final int BOX_PASSES = 3;
+    private static final int FIXED_SHIFT = 16;
+    private static final int FIXED_ONE = 1 << FIXED_SHIFT;
+    private static final int FIXED_HALF = FIXED_ONE >> 1;
+
+    private int[] mLineIn = new int[0];
+    private int[] mLineOut = new int[0];
+
+    private int[] mKernel = new int[0];
+    private int mKernelRadius = 0;
+    private float mKernelSigma = -1F;
+
+    private final int[] mBoxRadii = new int[BOX_PASSES];
+    private float mBoxSigma = -1F;
+
+    /**
+     * 将{@link android.graphics.Paint#setShadowLayer(float, float, float, int)}的模糊半径换算为高斯模糊的sigma，
+     * 和平台的换算方式保持一致。
+     */
+    public static float convertRadiusToSigma(float radius) {
+        return radius > 0 ? 0.57735F * radius + 0.5F : 0F;
+    }
+
+    /**
+     * 模糊会向外扩散的像素数。
+     */
+    public static int calcBlurReach(float sigma, int mode) {
+        if (sigma <= 0) {
+            return 0;
+        }
+        if (mode == MODE_BOX) {
+            int reach = 0;
+            for (int i = 0; i < BOX_PASSES; i++) {
+                reach += calcBoxRadius(sigma, i, BOX_PASSES);
+            }
+            return reach;
+        }
+        return (int) Math.ceil(sigma * 3F);
+    }
+
+    public void blur(@NonNull byte[] mask, int offset, int width, int height, int stride,
+                     float sigma, int mode) {
+        if (sigma <= 0 || width <= 0 || height <= 0) {
+            return;
+        }
+        prepare(sigma, mode, Math.max(width, height));
+        for (int y = 0; y < height; y++) {
+            final int rowStart = offset + y * stride;
+            int[] line = mLineIn;
+            for (int x = 0; x < width; x++) {
+                line[x] = mask[rowStart + x] & 0xFF;
+            }
+            line = blurLine(width, mode);
+            for (int x = 0; x < width; x++) {
+                mask[rowStart + x] = (byte) line[x];
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            final int columnStart = offset + x;
+            int[] line = mLineIn;
+            for (int y = 0; y < height; y++) {
+                line[y] = mask[columnStart + y * stride] & 0xFF;
+            }
+            line = blurLine(height, mode);
+            for (int y = 0; y < height; y++) {
+                mask[columnStart + y * stride] = (byte) line[y];
+            }
+        }
+    }
+
+    public void blur(@NonNull int[] mask, int offset, int width, int height, int stride,
+                     float sigma, int mode) {
+        if (sigma <= 0 || width <= 0 || height <= 0) {
+            return;
+        }
+        prepare(sigma, mode, Math.max(width, height));
+        for (int y = 0; y < height; y++) {
+            final int rowStart = offset + y * stride;
+            System.arraycopy(mask, rowStart, mLineIn, 0, width);
+            int[] line = blurLine(width, mode);
+            System.arraycopy(line, 0, mask, rowStart, width);
+        }
+        for (int x = 0; x < width; x++) {
+            final int columnStart = offset + x;
+            int[] line = mLineIn;
+            for (int y = 0; y < height; y++) {
+                line[y] = mask[columnStart + y * stride];
+            }
+            line = blurLine(height, mode);
+            for (int y = 0; y < height; y++) {
+                mask[columnStart + y * stride] = line[y];
+            }
+        }
+    }
+
+    private void prepare(float sigma, int mode, int length) {
+        if (mLineIn.length < length) {
+            mLineIn = new int[length];
+            mLineOut = new int[length];
+        }
+        if (mode == MODE_BOX) {
+            if (mBoxSigma != sigma) {
+                mBoxSigma = sigma;
+                for (int i = 0; i < BOX_PASSES; i++) {
+                    mBoxRadii[i] = calcBoxRadius(sigma, i, BOX_PASSES);
+                }
+            }
+        } else {
+            if (mKernelSigma != sigma) {
+                mKernelSigma = sigma;
+                buildGaussianKernel(sigma);
+            }
+        }
+    }
+
+    /**
+     * 模糊mLineIn中的前length个元素，返回保存结果的缓冲。
+     */
+    @NonNull
+    private int[] blurLine(int length, int mode) {
+        if (mode == MODE_BOX) {
+            for (int i = 0; i < BOX_PASSES; i++) {
+                if (mBoxRadii[i] > 0) {
+                    boxLine(mLineIn, mLineOut, length, mBoxRadii[i]);
+                    swapLines();
+                }
+            }
+        } else {
+            gaussianLine(mLineIn, mLineOut, length);
+            swapLines();
+        }
+        return mLineIn;
+    }
+
+    private void swapLines() {
+        int[] temp = mLineIn;
+        mLineIn = mLineOut;
+        mLineOut = temp;
+    }
+
+    private void gaussianLine(@NonNull int[] in, @NonNull int[] out, int length) {
+        final int[] kernel = mKernel;
+        final int radius = mKernelRadius;
+        for (int i = 0; i < length; i++) {
+            final int from = Math.max(-radius, -i);
+            final int to = Math.min(radius, length - 1 - i);
+            int sum = 0;
+            for (int k = from; k <= to; k++) {
+                sum += kernel[k + radius] * in[i + k];
+            }
+            out[i] = Math.min((sum + FIXED_HALF) >>> FIXED_SHIFT, 255);
+        }
+    }
+
+    private static void boxLine(@NonNull int[] in, @NonNull int[] out, int length, int radius) {
+        final int size = radius * 2 + 1;
+        final int scale = (FIXED_ONE + size / 2) / size;
+        int sum = 0;
+        for (int i = 0, n = Math.min(radius, length - 1); i <= n; i++) {
+            sum += in[i];
+        }
+        for (int i = 0; i < length; i++) {
+            out[i] = Math.min((sum * scale + FIXED_HALF) >>> FIXED_SHIFT, 255);
+            final int add = i + radius + 1;
+            final int remove = i - radius;
+            if (add < length) {
+                sum += in[add];
+            }
+            if (remove >= 0) {
+                sum -= in[remove];
+            }
+        }
+    }
+
+    private void buildGaussianKernel(float sigma) {
+        final int radius = (int) Math.ceil(sigma * 3F);
+        final int size = radius * 2 + 1;
+        if (mKernel.length < size) {
+            mKernel = new int[size];
+        }
+        mKernelRadius = radius;
+        final double denominator = 2.0 * sigma * sigma;
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            total += Math.exp(-(i * i) / denominator);
+        }
+        int sum = 0;
+        for (int i = -radius; i <= radius; i++) {
+            int weight = (int) Math.round(Math.exp(-(i * i) / denominator) / total * FIXED_ONE);
+            mKernel[i + radius] = weight;
+            sum += weight;
+        }
+        // 舍入误差补偿到中心，保证权重之和为1
+        mKernel[radius] += FIXED_ONE - sum;
+    }
+
+    /**
+     * 计算用n次盒式模糊逼近指定sigma的高斯模糊时，第pass次盒式模糊的半径。
+     */
+    @VisibleForTesting
+    static int calcBoxRadius(float sigma, int pass, int n) {
+        final double ideal = Math.sqrt(12.0 * sigma * sigma / n + 1);
+        int lower = (int) Math.floor(ideal);
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        final int upper = lower + 2;
+        final int m = (int) Math.round((12.0 * sigma * sigma - n * lower * lower - 4.0 * n * lower - 3.0 * n)
+                / (-4.0 * lower - 4.0));
+        final int size = pass < m ? lower : upper;
+        return Math.max((size - 1) / 2, 0);
+    }
+}
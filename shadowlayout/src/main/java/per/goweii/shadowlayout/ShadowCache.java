@@ -0,0 +1,143 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内共享的阴影位图缓存
+ * <p>
+ * 以{@link ShadowKey}为key，按最近最少使用的顺序在超出内存预算时淘汰。
+ * 被淘汰的位图不会被回收，仍在使用它的布局可以继续绘制，直到自身失效后重新获取。
+ */
+public final class ShadowCache {
+    private static final ShadowCache sInstance = new ShadowCache(calcDefaultMaxSize());
+
+    private final LinkedHashMap<ShadowKey, Bitmap> mBitmaps = new LinkedHashMap<>(16, 0.75F, true);
+
+    private int mMaxSize;
+    private int mSize = 0;
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+    private int mPutCount = 0;
+    private int mEvictionCount = 0;
+
+    @NonNull
+    public static ShadowCache getInstance() {
+        return sInstance;
+    }
+
+    private ShadowCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    @Nullable
+    public synchronized Bitmap get(@NonNull ShadowKey key) {
+        Bitmap bitmap = mBitmaps.get(key);
+        if (bitmap != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return bitmap;
+    }
+
+    /**
+     * 按构建器当前写入的内容查找，不需要先分配{@link ShadowKey}。
+     */
+    @Nullable
+    public synchronized Bitmap get(@NonNull ShadowKey.Builder builder) {
+        Bitmap bitmap = mBitmaps.get(builder.lookup());
+        if (bitmap != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return bitmap;
+    }
+
+    public synchronized void put(@NonNull ShadowKey key, @NonNull Bitmap bitmap) {
+        int size = sizeOf(bitmap);
+        if (size > mMaxSize) {
+            return;
+        }
+        mPutCount++;
+        Bitmap previous = mBitmaps.put(key, bitmap);
+        mSize += size;
+        if (previous != null) {
+            mSize -= sizeOf(previous);
+        }
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized void evictAll() {
+        trimToSize(0);
+    }
+
+    /**
+     * 设置缓存的内存预算，单位为字节。
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mMaxSize = Math.max(maxSize, 0);
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    public synchronized int getCount() {
+        return mBitmaps.size();
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getPutCount() {
+        return mPutCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "ShadowCache{size=" + mSize + ", maxSize=" + mMaxSize
+                + ", hits=" + mHitCount + ", misses=" + mMissCount
+                + ", evictions=" + mEvictionCount + "}";
+    }
+
+    private void trimToSize(int maxSize) {
+        Iterator<Map.Entry<ShadowKey, Bitmap>> iterator = mBitmaps.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Map.Entry<ShadowKey, Bitmap> eldest = iterator.next();
+            iterator.remove();
+            mSize -= sizeOf(eldest.getValue());
+            mEvictionCount++;
+        }
+    }
+
+    private static int sizeOf(@NonNull Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static int calcDefaultMaxSize() {
+        return (int) Math.min(Runtime.getRuntime().maxMemory() / 32, 8 * 1024 * 1024);
+    }
+}
@@ -0,0 +1,266 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 由{@link ShadowLayout.ShadowOutlineProvider}描述轮廓的阴影Drawable
+ * <p>
+ * 可以作为任意控件的背景或前景，不需要为了阴影嵌套一层{@link ShadowLayout}。
+ * 阴影半径、偏移和颜色的含义和{@link ShadowLayout}相同：
+ * 半径大于0时轮廓按{@link ShadowInsets}缩进，阴影绘制在Drawable范围内，{@link #getPadding(Rect)}返回这部分内边距；
+ * 半径小于0时轮廓占满Drawable范围，阴影绘制在范围之外，需要父布局关闭clipChildren。
+ * <p>
+ * 轮廓由提供者不依赖布局的重载{@link ShadowLayout.ShadowOutlineProvider#buildShadowOutline(ShadowPathBuffer, int, int)}构建，
+ * 阴影渲染为蒙版位图后通过{@link ShadowCache}共享，提供者不支持这个重载时不绘制阴影。
+ * 通过{@link #getConstantState()}创建的Drawable共享同一份参数和蒙版，调用{@link #mutate()}后才会单独修改参数，
+ * 轮廓提供者始终是共享的。
+ * <p>
+ * 修改轮廓提供者的参数后需要调用{@link #invalidateSelf()}，内边距改变时需要重新设置给控件。
+ */
+public class ShadowDrawable extends Drawable {
+    private final Paint mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final RectF mShadowExtent = new RectF();
+    private final float[] mShadowInsets = new float[4];
+
+    private ShadowState mShadowState;
+    private boolean mMutated = false;
+
+    public ShadowDrawable(@NonNull ShadowLayout.ShadowOutlineProvider shadowOutlineProvider) {
+        this(new ShadowState(shadowOutlineProvider));
+    }
+
+    private ShadowDrawable(@NonNull ShadowState shadowState) {
+        mShadowState = shadowState;
+    }
+
+    @NonNull
+    public ShadowLayout.ShadowOutlineProvider getShadowOutlineProvider() {
+        return mShadowState.mShadowOutlineProvider;
+    }
+
+    public void setShadowColor(@ColorInt int shadowColor) {
+        if (mShadowState.mShadowColor != shadowColor) {
+            mShadowState.mShadowColor = shadowColor;
+            invalidateSelf();
+        }
+    }
+
+    @ColorInt
+    public int getShadowColor() {
+        return mShadowState.mShadowColor;
+    }
+
+    public void setShadowRadius(float shadowRadius) {
+        if (mShadowState.mShadowRadius != shadowRadius) {
+            mShadowState.mShadowRadius = shadowRadius;
+            invalidateSelf();
+        }
+    }
+
+    public float getShadowRadius() {
+        return mShadowState.mShadowRadius;
+    }
+
+    public void setShadowOffsetX(float shadowOffsetX) {
+        if (mShadowState.mShadowOffsetX != shadowOffsetX) {
+            mShadowState.mShadowOffsetX = shadowOffsetX;
+            invalidateSelf();
+        }
+    }
+
+    public float getShadowOffsetX() {
+        return mShadowState.mShadowOffsetX;
+    }
+
+    public void setShadowOffsetY(float shadowOffsetY) {
+        if (mShadowState.mShadowOffsetY != shadowOffsetY) {
+            mShadowState.mShadowOffsetY = shadowOffsetY;
+            invalidateSelf();
+        }
+    }
+
+    public float getShadowOffsetY() {
+        return mShadowState.mShadowOffsetY;
+    }
+
+    public void setShadowSymmetry(boolean shadowSymmetry) {
+        if (mShadowState.mShadowSymmetry != shadowSymmetry) {
+            mShadowState.mShadowSymmetry = shadowSymmetry;
+            invalidateSelf();
+        }
+    }
+
+    public boolean isShadowSymmetry() {
+        return mShadowState.mShadowSymmetry;
+    }
+
+    /**
+     * 阴影的模糊方式，同{@link ShadowLayout#setShadowBlur(int)}。
+     */
+    public void setShadowBlur(@ShadowLayout.ShadowBlur int shadowBlur) {
+        if (mShadowState.mShadowBlur != shadowBlur) {
+            mShadowState.mShadowBlur = shadowBlur;
+            invalidateSelf();
+        }
+    }
+
+    @ShadowLayout.ShadowBlur
+    public int getShadowBlur() {
+        return mShadowState.mShadowBlur;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        final ShadowState state = mShadowState;
+        if (state.mShadowRadius == 0F || Color.alpha(state.mShadowColor) == 0 || state.mAlpha == 0) {
+            return;
+        }
+        final Rect bounds = getBounds();
+        calcShadowInsets(mShadowInsets);
+        final float left = bounds.left + mShadowInsets[0];
+        final float top = bounds.top + mShadowInsets[1];
+        final int width = (int) (bounds.right - mShadowInsets[2] - left);
+        final int height = (int) (bounds.bottom - mShadowInsets[3] - top);
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        ShadowMaskCache.calcShadowExtent(state.mShadowRadius, state.mShadowOffsetX, state.mShadowOffsetY,
+                width, height, mShadowExtent);
+        final Bitmap bitmap = state.mShadowMaskCache.obtain(state.mShadowOutlineProvider, width, height,
+                state.mShadowRadius, state.mShadowOffsetX, state.mShadowOffsetY, state.mShadowBlur, mShadowExtent);
+        if (bitmap == null) {
+            return;
+        }
+        final int color = state.mShadowColor;
+        final int alpha = Color.alpha(color) * state.mAlpha / 255;
+        mShadowPaint.setColor(Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color)));
+        mShadowPaint.setColorFilter(state.mColorFilter);
+        canvas.drawBitmap(bitmap, left + mShadowExtent.left, top + mShadowExtent.top, mShadowPaint);
+    }
+
+    /**
+     * 半径大于0时返回阴影占用的内边距，和{@link ShadowLayout}的内边距一致。
+     */
+    @Override
+    public boolean getPadding(@NonNull Rect padding) {
+        calcShadowInsets(mShadowInsets);
+        padding.set(
+                (int) Math.ceil(mShadowInsets[0]),
+                (int) Math.ceil(mShadowInsets[1]),
+                (int) Math.ceil(mShadowInsets[2]),
+                (int) Math.ceil(mShadowInsets[3])
+        );
+        return (padding.left | padding.top | padding.right | padding.bottom) != 0;
+    }
+
+    private void calcShadowInsets(@NonNull float[] insets) {
+        final ShadowState state = mShadowState;
+        ShadowInsets.calcShadowInsets(state.mShadowRadius, state.mShadowOffsetX, state.mShadowOffsetY,
+                state.mShadowSymmetry, insets);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (mShadowState.mAlpha != alpha) {
+            mShadowState.mAlpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mShadowState.mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        if (mShadowState.mColorFilter != colorFilter) {
+            mShadowState.mColorFilter = colorFilter;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Nullable
+    @Override
+    public ConstantState getConstantState() {
+        return mShadowState;
+    }
+
+    @Override
+    public int getChangingConfigurations() {
+        return super.getChangingConfigurations() | mShadowState.getChangingConfigurations();
+    }
+
+    /**
+     * 复制一份参数和蒙版缓存，之后的修改不再影响共享同一状态的其他Drawable。
+     */
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        if (!mMutated && super.mutate() == this) {
+            mShadowState = new ShadowState(mShadowState);
+            mMutated = true;
+        }
+        return this;
+    }
+
+    static final class ShadowState extends ConstantState {
+        final ShadowLayout.ShadowOutlineProvider mShadowOutlineProvider;
+        final ShadowMaskCache mShadowMaskCache = new ShadowMaskCache();
+
+        @ColorInt
+        int mShadowColor = Color.TRANSPARENT;
+        float mShadowRadius = 0F;
+        float mShadowOffsetX = 0F;
+        float mShadowOffsetY = 0F;
+        boolean mShadowSymmetry = false;
+        @ShadowLayout.ShadowBlur
+        int mShadowBlur = ShadowLayout.SHADOW_BLUR_PLATFORM;
+        int mAlpha = 255;
+        ColorFilter mColorFilter = null;
+
+        ShadowState(@NonNull ShadowLayout.ShadowOutlineProvider shadowOutlineProvider) {
+            mShadowOutlineProvider = shadowOutlineProvider;
+        }
+
+        ShadowState(@NonNull ShadowState other) {
+            mShadowOutlineProvider = other.mShadowOutlineProvider;
+            mShadowColor = other.mShadowColor;
+            mShadowRadius = other.mShadowRadius;
+            mShadowOffsetX = other.mShadowOffsetX;
+            mShadowOffsetY = other.mShadowOffsetY;
+            mShadowSymmetry = other.mShadowSymmetry;
+            mShadowBlur = other.mShadowBlur;
+            mAlpha = other.mAlpha;
+            mColorFilter = other.mColorFilter;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new ShadowDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+}
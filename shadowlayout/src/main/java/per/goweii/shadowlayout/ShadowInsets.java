@@ -0,0 +1,39 @@
+package per.goweii.shadowlayout;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 阴影内边距的计算
+ * <p>
+ * 不依赖Android的绘图类，由{@link ShadowLayout#updateShadowInsets(android.graphics.RectF)}调用，
+ * 也可以直接在JVM上做基准测试。
+ */
+public final class ShadowInsets {
+    private ShadowInsets() {
+    }
+
+    /**
+     * 按左、上、右、下的顺序把内边距写入insets的前4位，外阴影不占据布局空间，内边距为0。
+     */
+    public static void calcShadowInsets(float shadowRadius,
+                                        float shadowOffsetX,
+                                        float shadowOffsetY,
+                                        boolean shadowSymmetry,
+                                        @NonNull float[] insets) {
+        float l = 0, r = 0, t = 0, b = 0;
+        if (shadowRadius > 0) {
+            l = Math.max(shadowRadius - shadowOffsetX, 0);
+            r = Math.max(shadowRadius + shadowOffsetX, 0);
+            t = Math.max(shadowRadius - shadowOffsetY, 0);
+            b = Math.max(shadowRadius + shadowOffsetY, 0);
+            if (shadowSymmetry) {
+                l = r = Math.max(l, r);
+                t = b = Math.max(t, b);
+            }
+        }
+        insets[0] = l;
+        insets[1] = t;
+        insets[2] = r;
+        insets[3] = b;
+    }
+}
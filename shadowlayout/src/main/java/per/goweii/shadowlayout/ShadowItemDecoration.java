@@ -0,0 +1,171 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Build;
+import android.view.View;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 在{@link RecyclerView}的子项下方绘制外阴影的装饰
+ * <p>
+ * 轮廓由{@link ShadowLayout.ShadowOutlineProvider}不依赖布局的重载
+ * {@link ShadowLayout.ShadowOutlineProvider#buildShadowOutline(ShadowPathBuffer, int, int)}构建，
+ * 可以直接使用圆角或气泡布局的轮廓提供者，不需要为每个子项嵌套一层{@link ShadowLayout}。
+ * 提供者不支持这个重载时不绘制阴影。
+ * <p>
+ * 阴影渲染为蒙版位图后绘制，提供者支持{@link ShadowLayout.ShadowOutlineProvider#buildShadowOutlineKey(ShadowKey.Builder)}时
+ * 通过{@link ShadowCache}共享，尺寸相同的子项只会渲染一次；不支持时按轮廓内容比较，只复用上一次渲染的结果。
+ * 绘制时跟随子项的平移、缩放和透明度，子项动画期间阴影会一起移动和淡出。
+ * <p>
+ * 阴影不会占用子项的间距，需要的话通过{@link #getItemOffsets}或者子项的外边距留出空间。
+ * 修改阴影或轮廓参数后需要调用{@link RecyclerView#invalidateItemDecorations()}。
+ */
+public class ShadowItemDecoration extends RecyclerView.ItemDecoration {
+    private final ShadowLayout.ShadowOutlineProvider mShadowOutlineProvider;
+
+    private final ShadowMaskCache mShadowMaskCache = new ShadowMaskCache();
+    private final Paint mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final RectF mShadowExtent = new RectF();
+    private final RectF mMappedExtent = new RectF();
+
+    private float mShadowRadius = 0F;
+    @ColorInt
+    private int mShadowColor = Color.TRANSPARENT;
+    private float mShadowOffsetX = 0F;
+    private float mShadowOffsetY = 0F;
+    @ShadowLayout.ShadowBlur
+    private int mShadowBlur = ShadowLayout.SHADOW_BLUR_PLATFORM;
+
+    public ShadowItemDecoration(@NonNull ShadowLayout.ShadowOutlineProvider shadowOutlineProvider) {
+        mShadowOutlineProvider = shadowOutlineProvider;
+    }
+
+    @NonNull
+    public ShadowLayout.ShadowOutlineProvider getShadowOutlineProvider() {
+        return mShadowOutlineProvider;
+    }
+
+    /**
+     * 阴影半径，和{@link ShadowLayout#setShadowRadius(float)}相同，这里总是按外阴影处理。
+     */
+    public void setShadowRadius(float shadowRadius) {
+        mShadowRadius = shadowRadius;
+    }
+
+    public float getShadowRadius() {
+        return mShadowRadius;
+    }
+
+    public void setShadowColor(@ColorInt int shadowColor) {
+        mShadowColor = shadowColor;
+    }
+
+    @ColorInt
+    public int getShadowColor() {
+        return mShadowColor;
+    }
+
+    public void setShadowOffsetX(float shadowOffsetX) {
+        mShadowOffsetX = shadowOffsetX;
+    }
+
+    public float getShadowOffsetX() {
+        return mShadowOffsetX;
+    }
+
+    public void setShadowOffsetY(float shadowOffsetY) {
+        mShadowOffsetY = shadowOffsetY;
+    }
+
+    public float getShadowOffsetY() {
+        return mShadowOffsetY;
+    }
+
+    /**
+     * 阴影的模糊方式，同{@link ShadowLayout#setShadowBlur(int)}。
+     */
+    public void setShadowBlur(@ShadowLayout.ShadowBlur int shadowBlur) {
+        mShadowBlur = shadowBlur;
+    }
+
+    @ShadowLayout.ShadowBlur
+    public int getShadowBlur() {
+        return mShadowBlur;
+    }
+
+    /**
+     * 返回false时不为该子项绘制阴影，例如分组标题，默认全部绘制。
+     */
+    protected boolean hasShadow(@NonNull RecyclerView parent, @NonNull View child) {
+        return true;
+    }
+
+    @Override
+    public void onDraw(@NonNull Canvas c, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (mShadowRadius == 0F || Color.alpha(mShadowColor) == 0) {
+            return;
+        }
+        ShadowMemoryTrimmer.register(parent.getContext());
+        final int childCount = parent.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = parent.getChildAt(i);
+            if (child.getVisibility() != View.VISIBLE || child.getAlpha() <= 0F) {
+                continue;
+            }
+            if (!hasShadow(parent, child)) {
+                continue;
+            }
+            drawChildShadow(c, child);
+        }
+    }
+
+    private void drawChildShadow(@NonNull Canvas canvas, @NonNull View child) {
+        final int width = child.getWidth();
+        final int height = child.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        ShadowMaskCache.calcShadowExtent(mShadowRadius, mShadowOffsetX, mShadowOffsetY, width, height, mShadowExtent);
+        mMappedExtent.set(mShadowExtent);
+        if (!child.hasIdentityMatrix()) {
+            child.getMatrix().mapRect(mMappedExtent);
+        }
+        mMappedExtent.offset(child.getLeft(), child.getTop());
+        if (quickReject(canvas, mMappedExtent)) {
+            return;
+        }
+        final Bitmap bitmap = mShadowMaskCache.obtain(mShadowOutlineProvider, width, height,
+                mShadowRadius, mShadowOffsetX, mShadowOffsetY, mShadowBlur, mShadowExtent);
+        if (bitmap == null) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(child.getLeft(), child.getTop());
+        if (!child.hasIdentityMatrix()) {
+            canvas.concat(child.getMatrix());
+        }
+        final int alpha = Math.round(Color.alpha(mShadowColor) * Math.min(child.getAlpha(), 1F));
+        mShadowPaint.setColor(Color.argb(alpha,
+                Color.red(mShadowColor), Color.green(mShadowColor), Color.blue(mShadowColor)));
+        canvas.drawBitmap(bitmap, mShadowExtent.left, mShadowExtent.top, mShadowPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 带EdgeType的重载在API 30废弃，新版本使用只传范围的重载，按抗锯齿的边缘判断，和{@link Canvas.EdgeType#AA}一致。
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean quickReject(@NonNull Canvas canvas, @NonNull RectF rect) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return canvas.quickReject(rect);
+        }
+        return canvas.quickReject(rect, Canvas.EdgeType.AA);
+    }
+}
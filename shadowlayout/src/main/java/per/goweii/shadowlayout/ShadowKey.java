@@ -0,0 +1,144 @@
+package per.goweii.shadowlayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 阴影的规范化描述，用于在多个{@link ShadowLayout}之间共享阴影缓存。
+ * <p>
+ * 由{@link Builder}依次写入轮廓类型和几何参数生成，参数完全一致的阴影会得到相等的key。
+ */
+public final class ShadowKey {
+    private final Class<?> mType;
+    private final float[] mValues;
+    private final int mHashCode;
+
+    private ShadowKey(@NonNull Class<?> type, @NonNull float[] values) {
+        mType = type;
+        mValues = values;
+        mHashCode = 31 * type.hashCode() + Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ShadowKey)) return false;
+        ShadowKey other = (ShadowKey) o;
+        return mHashCode == other.mHashCode
+                && mType == other.mType
+                && Arrays.equals(mValues, other.mValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ShadowKey{" + mType.getSimpleName() + Arrays.toString(mValues) + "}";
+    }
+
+    /**
+     * 可复用的key构建器，只有在{@link #build()}时才会分配新的key。
+     */
+    public static final class Builder {
+        private Class<?> mType = Object.class;
+        private float[] mValues = new float[16];
+        private int mSize = 0;
+        private final Lookup mLookup = new Lookup();
+
+        @NonNull
+        public Builder reset(@NonNull Class<?> type) {
+            mType = type;
+            mSize = 0;
+            return this;
+        }
+
+        @NonNull
+        public Builder append(float value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+            return this;
+        }
+
+        @NonNull
+        public Builder append(int value) {
+            return append((float) value);
+        }
+
+        @NonNull
+        public Builder append(boolean value) {
+            return append(value ? 1F : 0F);
+        }
+
+        /**
+         * 判断当前写入的内容是否和已有的key一致，不会产生分配。
+         */
+        public boolean matches(@Nullable ShadowKey key) {
+            if (key == null || key.mType != mType || key.mValues.length != mSize) {
+                return false;
+            }
+            for (int i = 0; i < mSize; i++) {
+                if (Float.floatToIntBits(key.mValues[i]) != Float.floatToIntBits(mValues[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 判断两个构建器当前写入的内容是否一致，不会产生分配。
+         */
+        public boolean matches(@NonNull Builder other) {
+            if (other.mType != mType || other.mSize != mSize) {
+                return false;
+            }
+            for (int i = 0; i < mSize; i++) {
+                if (Float.floatToIntBits(other.mValues[i]) != Float.floatToIntBits(mValues[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 和内容相同的{@link ShadowKey}哈希值、比较结果一致的查找对象，用于不分配key就从哈希表中查找。
+         * 只能作为查找的参数，不能作为key放入哈希表，内容随构建器改变。
+         */
+        @NonNull
+        Object lookup() {
+            return mLookup;
+        }
+
+        @NonNull
+        public ShadowKey build() {
+            return new ShadowKey(mType, Arrays.copyOf(mValues, mSize));
+        }
+
+        /**
+         * 哈希表查找时用参数的equals和表中的key比较，所以只需要这一侧能和{@link ShadowKey}比较。
+         */
+        private final class Lookup {
+            @Override
+            public boolean equals(@Nullable Object o) {
+                return o instanceof ShadowKey && matches((ShadowKey) o);
+            }
+
+            @Override
+            public int hashCode() {
+                // 和ShadowKey中的Arrays.hashCode(float[])一致
+                int result = 1;
+                for (int i = 0; i < mSize; i++) {
+                    result = 31 * result + Float.floatToIntBits(mValues[i]);
+                }
+                return 31 * mType.hashCode() + result;
+            }
+        }
+    }
+}
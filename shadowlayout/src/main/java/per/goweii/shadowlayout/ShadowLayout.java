@@ -2,22 +2,41 @@ package per.goweii.shadowlayout;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewOutlineProvider;
 import android.view.ViewParent;
 import android.widget.FrameLayout;
 
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 阴影布局
@@ -29,12 +48,53 @@ import java.lang.ref.WeakReference;
  * 通过设置{@link ShadowLayout#setShadowRadius(float)}为正数或者负数可实现内阴影或外阴影效果。
  * 内阴影：阴影会占据布局空间，即留出阴影的padding。
  * 外阴影：阴影会不会占据布局空间。
+ * <p>
+ * 支持阴影缓存
+ * 通过{@link ShadowLayout#setShadowCacheEnabled(boolean)}开启后，阴影只会在轮廓、半径或偏移改变时绘制一次到位图中，
+ * 之后每一帧直接绘制该位图，避免重复模糊。
+ * 如果{@link ShadowOutlineProvider}可以描述自身的轮廓，参数相同的阴影会通过{@link ShadowCache}在所有布局间共享同一张位图。
+ * <p>
+ * 支持批量修改
+ * 修改阴影属性后内边距会立即更新，轮廓的构建和阴影的渲染推迟到绘制时，同一帧内的多次修改只处理一次。
+ * 也可以在{@link ShadowLayout#edit()}和{@link ShadowLayout#apply()}之间修改多个属性，内边距只在apply时更新一次。
  */
 public class ShadowLayout extends FrameLayout {
+    public static final int SHADOW_BLUR_PLATFORM = 0;
+    public static final int SHADOW_BLUR_GAUSSIAN = 1;
+    public static final int SHADOW_BLUR_BOX = 2;
+    public static final int SHADOW_BLUR_ANALYTIC = 3;
+
+    public static final int SHADOW_ERASE_AUTO = 0;
+    public static final int SHADOW_ERASE_LAYER = 1;
+    public static final int SHADOW_ERASE_CLIP_OUT = 2;
+
+    public static final int SHADOW_BACKEND_SOFTWARE = 0;
+    public static final int SHADOW_BACKEND_ELEVATION = 1;
+
+    // 只影响阴影的绘制，需要重新渲染阴影
+    private static final int DIRTY_PAINT = 1;
+    // 可能改变阴影内边距，内边距改变时轮廓和布局也会改变
+    private static final int DIRTY_INSETS = 1 << 1;
+    // 轮廓形状改变，需要重新构建轮廓
+    private static final int DIRTY_OUTLINE = 1 << 2;
+    // 需要重新设置内边距
+    private static final int DIRTY_LAYOUT = 1 << 3;
+
+    private static Executor sShadowCacheExecutor = null;
+
     private final Paint mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private final RectF mShadowInsets = new RectF();
+    private final RectF mNewShadowInsets = new RectF();
+    private final float[] mShadowInsetsValues = new float[4];
+
+    private int mPendingDirty = 0;
+    private int mEditDepth = 0;
     private final Path mShadowOutline = new Path();
     private final PorterDuffXfermode mXfermodeDstOut = new PorterDuffXfermode(PorterDuff.Mode.DST_OUT);
+    private final RectF mShadowBounds = new RectF();
+    private final RectF mShadowOutlineBounds = new RectF();
+    private final RectF mLayerBounds = new RectF();
+    private final Rect mClipBounds = new Rect();
 
     private boolean mShadowSymmetry = false;
     private int mShadowColor = Color.argb(25, 0, 0, 0);
@@ -43,10 +103,47 @@ public class ShadowLayout extends FrameLayout {
     private float mShadowOffsetY = 0F;
 
     private boolean mClipToShadowOutline = true;
+    private final RectF mClipOutlineRect = new RectF();
+    private final RectF mElevationOutlineRect = new RectF();
+    private float mClipOutlineRadius = -1F;
+    private ShadowClipNode mShadowClipNode = null;
+    private boolean mContentOutlineApplied = false;
+    private ShadowNode mShadowNode = null;
+    private boolean mShadowNodeInvalidate = true;
 
     private boolean mShadowOutlineInvalidate = false;
     private ShadowOutlineProvider mShadowOutlineProvider = null;
 
+    @ShadowBlur
+    private int mShadowBlur = SHADOW_BLUR_PLATFORM;
+    @ShadowErase
+    private int mShadowErase = SHADOW_ERASE_AUTO;
+    @ShadowBackend
+    private int mShadowBackend = SHADOW_BACKEND_SOFTWARE;
+    private ShadowElevation mShadowElevation = null;
+    private boolean mShadowOverlayEnabled = false;
+    private ShadowOverlay mShadowOverlay = null;
+    private boolean mAttachedToWindow = false;
+    private boolean mParentClipChildrenDisabled = false;
+    private boolean mShadowCacheEnabled = false;
+    private boolean mShadowCacheInvalidate = true;
+    private Bitmap mShadowCacheBitmap = null;
+    private ShadowKey mShadowCacheKey = null;
+    private final ShadowKey.Builder mShadowKeyBuilder = new ShadowKey.Builder();
+    private final ShadowCacheSpec mShadowCacheSpec = new ShadowCacheSpec();
+    private final ShadowCacheSpec mShadowCacheNextSpec = new ShadowCacheSpec();
+    private boolean mShadowCacheAsync = false;
+    private ShadowCacheTask mShadowCacheTask = null;
+    private ShadowLevels mShadowLevels = null;
+    private ShadowLevels mRecycledShadowLevels = null;
+    private ShadowCacheTask mShadowLevelsTask = null;
+    private final ShadowCacheSpec mShadowLevelsSpec = new ShadowCacheSpec();
+    private ShadowMetrics mShadowMetrics = null;
+    private final Rect mShadowCacheSrc = new Rect();
+    private final RectF mShadowCacheDst = new RectF();
+    private final RectF mShadowStretchMargins = new RectF();
+    private final Path mShadowStretchOutline = new Path();
+
     public ShadowLayout(Context context) {
         this(context, null);
     }
@@ -58,12 +155,19 @@ public class ShadowLayout extends FrameLayout {
     public ShadowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         setWillNotDraw(false);
+        ShadowMemoryTrimmer.register(context);
         TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ShadowLayout);
         mShadowColor = typedArray.getColor(R.styleable.ShadowLayout_shadowColor, mShadowColor);
         mShadowSymmetry = typedArray.getBoolean(R.styleable.ShadowLayout_shadowSymmetry, mShadowSymmetry);
         mShadowRadius = typedArray.getDimension(R.styleable.ShadowLayout_shadowRadius, mShadowRadius);
         mShadowOffsetX = typedArray.getDimension(R.styleable.ShadowLayout_shadowOffsetX, mShadowOffsetX);
         mShadowOffsetY = typedArray.getDimension(R.styleable.ShadowLayout_shadowOffsetY, mShadowOffsetY);
+        mShadowCacheEnabled = typedArray.getBoolean(R.styleable.ShadowLayout_shadowCacheEnabled, mShadowCacheEnabled);
+        mShadowBlur = typedArray.getInt(R.styleable.ShadowLayout_shadowBlur, mShadowBlur);
+        mShadowCacheAsync = typedArray.getBoolean(R.styleable.ShadowLayout_shadowCacheAsync, mShadowCacheAsync);
+        mShadowErase = typedArray.getInt(R.styleable.ShadowLayout_shadowErase, mShadowErase);
+        mShadowBackend = typedArray.getInt(R.styleable.ShadowLayout_shadowBackend, mShadowBackend);
+        mShadowOverlayEnabled = typedArray.getBoolean(R.styleable.ShadowLayout_shadowOverlay, mShadowOverlayEnabled);
         typedArray.recycle();
     }
 
@@ -102,9 +206,141 @@ public class ShadowLayout extends FrameLayout {
         return mClipToShadowOutline;
     }
 
+    /**
+     * 开启后阴影会以ALPHA_8位图的形式缓存，颜色在绘制位图时才着色，
+     * 所以修改阴影颜色不会导致重新模糊。
+     */
+    public void setShadowCacheEnabled(boolean shadowCacheEnabled) {
+        if (mShadowCacheEnabled != shadowCacheEnabled) {
+            mShadowCacheEnabled = shadowCacheEnabled;
+            if (!mShadowCacheEnabled) {
+                releaseShadowCache();
+            }
+            mShadowCacheInvalidate = true;
+            invalidate();
+        }
+    }
+
+    public boolean isShadowCacheEnabled() {
+        return mShadowCacheEnabled;
+    }
+
+    /**
+     * 开启后阴影缓存会在后台线程渲染，渲染完成前继续绘制之前的阴影（没有则不绘制），完成后刷新一次。
+     */
+    public void setShadowCacheAsync(boolean shadowCacheAsync) {
+        if (mShadowCacheAsync != shadowCacheAsync) {
+            mShadowCacheAsync = shadowCacheAsync;
+            cancelShadowCacheTask();
+            mShadowCacheInvalidate = true;
+            invalidate();
+        }
+    }
+
+    public boolean isShadowCacheAsync() {
+        return mShadowCacheAsync;
+    }
+
+    /**
+     * 设置阴影的模糊方式
+     * <p>
+     * {@link #SHADOW_BLUR_PLATFORM}使用{@link Paint#setShadowLayer(float, float, float, int)}，
+     * {@link #SHADOW_BLUR_GAUSSIAN}和{@link #SHADOW_BLUR_BOX}使用{@link ShadowBlurEngine}，
+     * {@link #SHADOW_BLUR_ANALYTIC}在轮廓为统一圆角的圆角矩形时使用{@link ShadowAnalyticBlur}直接计算，耗时和阴影半径无关，
+     * 其他轮廓按{@link #SHADOW_BLUR_GAUSSIAN}处理。
+     * 除了{@link #SHADOW_BLUR_PLATFORM}都需要渲染到位图中，所以总是会使用阴影缓存。
+     */
+    public void setShadowBlur(@ShadowBlur int shadowBlur) {
+        if (mShadowBlur != shadowBlur) {
+            mShadowBlur = shadowBlur;
+            mShadowCacheInvalidate = true;
+            invalidate();
+        }
+    }
+
+    @ShadowBlur
+    public int getShadowBlur() {
+        return mShadowBlur;
+    }
+
+    /**
+     * 设置不使用缓存时擦除轮廓内部阴影的方式
+     * <p>
+     * {@link #SHADOW_ERASE_LAYER}在离屏图层中绘制阴影后用{@link PorterDuff.Mode#DST_OUT}擦除轮廓内部，
+     * {@link #SHADOW_ERASE_CLIP_OUT}先裁剪掉轮廓内部再绘制阴影，不需要离屏图层，
+     * {@link #SHADOW_ERASE_AUTO}在Android 8.0及以上的硬件加速画布中使用裁剪，否则使用图层。
+     */
+    public void setShadowErase(@ShadowErase int shadowErase) {
+        if (mShadowErase != shadowErase) {
+            mShadowErase = shadowErase;
+            mShadowNodeInvalidate = true;
+            invalidate();
+        }
+    }
+
+    @ShadowErase
+    public int getShadowErase() {
+        return mShadowErase;
+    }
+
+    /**
+     * 设置期望的阴影实现方式
+     * <p>
+     * {@link #SHADOW_BACKEND_ELEVATION}在Android 9.0及以上、外阴影且轮廓为统一圆角的圆角矩形时，
+     * 使用系统的elevation阴影，由渲染线程绘制，不需要任何模糊。系统阴影的光源固定，所以只能尽量接近：
+     * 阴影半径映射为elevation，颜色映射为阴影颜色，偏移会被忽略。
+     * 系统阴影的偏移由窗口中固定的点光源决定，会随布局在屏幕上的位置变化，也没有单独设置偏移的方法，
+     * 用translationZ模拟偏移会同时放大模糊，所以不对偏移做映射。需要准确的偏移时请使用{@link #SHADOW_BACKEND_SOFTWARE}。
+     * 条件不满足时仍然使用{@link #SHADOW_BACKEND_SOFTWARE}，实际使用的方式可以通过{@link #getActiveShadowBackend()}查询。
+     */
+    public void setShadowBackend(@ShadowBackend int shadowBackend) {
+        if (mShadowBackend != shadowBackend) {
+            mShadowBackend = shadowBackend;
+            invalidateShadowOutline();
+        }
+    }
+
+    @ShadowBackend
+    public int getShadowBackend() {
+        return mShadowBackend;
+    }
+
+    @ShadowBackend
+    public int getActiveShadowBackend() {
+        return mShadowElevation != null ? SHADOW_BACKEND_ELEVATION : SHADOW_BACKEND_SOFTWARE;
+    }
+
+    /**
+     * 开启后外阴影绘制在父布局的{@link android.view.ViewGroupOverlay}中，不再关闭父布局的clipChildren，
+     * 父布局的其他子控件仍然会被裁剪。浮层绘制在所有子控件之上，阴影会覆盖范围内的相邻控件。
+     * 需要Android 4.3及以上，否则仍然关闭父布局的clipChildren。
+     */
+    public void setShadowOverlay(boolean shadowOverlay) {
+        if (mShadowOverlayEnabled != shadowOverlay) {
+            mShadowOverlayEnabled = shadowOverlay;
+            updateShadowOverlay();
+            invalidate();
+        }
+    }
+
+    public boolean isShadowOverlay() {
+        return mShadowOverlayEnabled;
+    }
+
+    /**
+     * 外阴影当前是否绘制在父布局的浮层中。
+     */
+    public boolean isShadowOverlayActive() {
+        return mShadowOverlay != null && mShadowOverlay.getParent() != null;
+    }
+
     public void setShadowColor(int shadowColor) {
         if (mShadowColor != shadowColor) {
             mShadowColor = shadowColor;
+            mShadowNodeInvalidate = true;
+            if (mShadowElevation != null) {
+                updateShadowBackend();
+            }
             invalidate();
         }
     }
@@ -115,9 +351,16 @@ public class ShadowLayout extends FrameLayout {
 
     public void setShadowRadius(float shadowRadius) {
         if (mShadowRadius != shadowRadius) {
+            final boolean wasOuterShadow = isOuterShadow();
+            final boolean wasInnerShadow = isInnerShadow();
             mShadowRadius = shadowRadius;
-            invalidateShadowOutline();
-            invalidate();
+            if (wasOuterShadow != isOuterShadow() || wasInnerShadow != isInnerShadow()) {
+                // 内外阴影切换时轮廓的位置会改变
+                updateShadowOverlay();
+                invalidateShadow(DIRTY_PAINT | DIRTY_INSETS | DIRTY_OUTLINE);
+            } else {
+                invalidateShadow(DIRTY_PAINT | DIRTY_INSETS);
+            }
         }
     }
 
@@ -125,6 +368,43 @@ public class ShadowLayout extends FrameLayout {
         return mShadowRadius;
     }
 
+    /**
+     * 开始阴影半径动画，在fromRadius和toRadius之间预先渲染几级阴影，
+     * 动画过程中{@link #setShadowRadius(float)}只会在最接近的两级之间混合，不会重新模糊。
+     * 结束时需要调用{@link #endShadowRadiusAnimation()}，之后按最终的半径精确绘制。
+     * <p>
+     * 各级阴影在后台线程渲染，完成前按当前的半径直接绘制阴影。再次开始动画时复用上一次的位图。
+     * 只支持外阴影，内阴影的半径会改变内边距，此时调用无效。
+     */
+    public void beginShadowRadiusAnimation(float fromRadius, float toRadius) {
+        cancelShadowLevelsTask();
+        if (mShadowLevels != null) {
+            mRecycledShadowLevels = mShadowLevels;
+        }
+        if (fromRadius >= 0 || toRadius >= 0) {
+            mShadowLevels = null;
+            return;
+        }
+        mShadowLevels = new ShadowLevels(fromRadius, toRadius, mRecycledShadowLevels);
+        mRecycledShadowLevels = null;
+        invalidate();
+    }
+
+    public void endShadowRadiusAnimation() {
+        if (mShadowLevels != null) {
+            cancelShadowLevelsTask();
+            mRecycledShadowLevels = mShadowLevels;
+            mShadowLevels = null;
+            mShadowCacheInvalidate = true;
+            mShadowNodeInvalidate = true;
+            invalidate();
+        }
+    }
+
+    public boolean isShadowRadiusAnimating() {
+        return mShadowLevels != null;
+    }
+
     public boolean isInnerShadow() {
         return mShadowRadius > 0;
     }
@@ -140,8 +420,7 @@ public class ShadowLayout extends FrameLayout {
     public void setShadowSymmetry(boolean shadowSymmetry) {
         if (mShadowSymmetry != shadowSymmetry) {
             mShadowSymmetry = shadowSymmetry;
-            invalidateShadowOutline();
-            invalidate();
+            invalidateShadow(DIRTY_INSETS);
         }
     }
 
@@ -152,8 +431,7 @@ public class ShadowLayout extends FrameLayout {
     public void setShadowOffsetX(float shadowOffsetX) {
         if (mShadowOffsetX != shadowOffsetX) {
             mShadowOffsetX = shadowOffsetX;
-            invalidateShadowOutline();
-            invalidate();
+            invalidateShadow(DIRTY_PAINT | DIRTY_INSETS);
         }
     }
 
@@ -164,8 +442,7 @@ public class ShadowLayout extends FrameLayout {
     public void setShadowOffsetY(float shadowOffsetY) {
         if (mShadowOffsetY != shadowOffsetY) {
             mShadowOffsetY = shadowOffsetY;
-            invalidateShadowOutline();
-            invalidate();
+            invalidateShadow(DIRTY_PAINT | DIRTY_INSETS);
         }
     }
 
@@ -181,18 +458,133 @@ public class ShadowLayout extends FrameLayout {
         return mShadowOutline;
     }
 
+    /**
+     * 读取最近一次构建轮廓时得到的圆角矩形，不会重新计算，供绘制时使用。
+     *
+     * @return 圆角半径，轮廓不是圆角矩形时返回-1
+     */
+    protected float getShadowOutlineRoundRect(@NonNull RectF roundRect) {
+        if (mClipOutlineRadius >= 0) {
+            roundRect.set(mClipOutlineRect);
+        }
+        return mClipOutlineRadius;
+    }
+
     public void invalidateShadowOutline() {
-        mShadowOutlineInvalidate = true;
-        setParentClipChildren(!isOuterShadow());
-        updateShadowInsets(mShadowInsets);
-        updatePadding();
+        invalidateShadow(DIRTY_PAINT | DIRTY_INSETS | DIRTY_OUTLINE | DIRTY_LAYOUT);
+    }
+
+    /**
+     * 开始批量修改，直到对应的{@link #apply()}之前，属性的修改都不会更新内边距。
+     * 可以嵌套调用，最外层的apply时统一更新。
+     */
+    public void edit() {
+        mEditDepth++;
+    }
+
+    /**
+     * 结束批量修改并立即更新一次。
+     */
+    public void apply() {
+        if (mEditDepth <= 0) {
+            throw new IllegalStateException("apply() called without edit()");
+        }
+        mEditDepth--;
+        if (mEditDepth == 0) {
+            flushShadowInvalidation();
+        }
+    }
+
+    /**
+     * 记录需要更新的部分，批量修改中等待apply，否则立即处理。
+     * 内边距必须在这里更新，不能留到绘制时，否则会在绘制中请求布局，设置后读到的内边距也是旧的。
+     */
+    private void invalidateShadow(int dirty) {
+        mPendingDirty |= dirty;
+        if (mEditDepth > 0) {
+            return;
+        }
+        flushShadowInvalidation();
+    }
+
+    /**
+     * 只更新受影响的部分：内边距没有改变时不会重新设置内边距，轮廓没有改变时不会重新构建轮廓。
+     * 轮廓和阴影只标记为失效，在下一次绘制时统一重建。
+     */
+    private void flushShadowInvalidation() {
+        int dirty = mPendingDirty;
+        if (dirty == 0) {
+            return;
+        }
+        mPendingDirty = 0;
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordInvalidate();
+        }
+        if ((dirty & DIRTY_INSETS) != 0) {
+            updateShadowInsets(mNewShadowInsets);
+            if (!mNewShadowInsets.equals(mShadowInsets)) {
+                mShadowInsets.set(mNewShadowInsets);
+                dirty |= DIRTY_PAINT | DIRTY_OUTLINE | DIRTY_LAYOUT;
+            }
+        }
+        if ((dirty & DIRTY_OUTLINE) != 0) {
+            mShadowOutlineInvalidate = true;
+            if (mShadowLevels != null) {
+                mShadowLevels.invalidate();
+                cancelShadowLevelsTask();
+            }
+        }
+        if ((dirty & (DIRTY_PAINT | DIRTY_OUTLINE)) != 0) {
+            mShadowCacheInvalidate = true;
+            mShadowNodeInvalidate = true;
+            updateShadowBackend();
+        }
+        if ((dirty & DIRTY_LAYOUT) != 0) {
+            if (updatePadding() && ShadowMetrics.isEnabled()) {
+                obtainShadowMetrics().recordLayoutRequest();
+            }
+        }
         invalidate();
     }
 
+    private void updateShadowBackend() {
+        float elevationOutlineRadius = -1F;
+        if (mShadowBackend == SHADOW_BACKEND_ELEVATION
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                && isOuterShadow()
+                && mShadowOutlineProvider != null) {
+            elevationOutlineRadius = mShadowOutlineProvider.getShadowOutlineRoundRect(this, mShadowInsets, mElevationOutlineRect);
+        }
+        if (elevationOutlineRadius >= 0) {
+            if (mShadowElevation == null) {
+                mShadowElevation = new ShadowElevation(this);
+            }
+            mShadowElevation.update(mElevationOutlineRect, elevationOutlineRadius,
+                    Math.abs(mShadowRadius), mShadowColor, mClipToShadowOutline);
+        } else if (mShadowElevation != null) {
+            mShadowElevation.release();
+            mShadowElevation = null;
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        setParentClipChildren(!isOuterShadow());
+        mAttachedToWindow = true;
+        updateShadowOverlay();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttachedToWindow = false;
+        updateShadowOverlay();
+        // 离开父布局后不再负责恢复它的clipChildren
+        mParentClipChildrenDisabled = false;
+        if (mShadowNode != null) {
+            mShadowNode.discard();
+        }
+        mRecycledShadowLevels = null;
     }
 
     @Override
@@ -217,40 +609,37 @@ public class ShadowLayout extends FrameLayout {
         }
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        setParentClipChildren(!isOuterShadow());
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-    }
-
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        invalidateShadowOutline();
+        invalidateShadow(DIRTY_INSETS | DIRTY_OUTLINE);
     }
 
     protected void updateShadowInsets(@NonNull RectF shadowInsets) {
-        float l = 0, r = 0, t = 0, b = 0;
-        if (isInnerShadow()) {
-            l = Math.max(mShadowRadius - mShadowOffsetX, 0);
-            r = Math.max(mShadowRadius + mShadowOffsetX, 0);
-            t = Math.max(mShadowRadius - mShadowOffsetY, 0);
-            b = Math.max(mShadowRadius + mShadowOffsetY, 0);
-            if (mShadowSymmetry) {
-                l = r = Math.max(l, r);
-                t = b = Math.max(t, b);
-            }
-        }
-        shadowInsets.set(l, t, r, b);
+        final float[] values = mShadowInsetsValues;
+        ShadowInsets.calcShadowInsets(mShadowRadius, mShadowOffsetX, mShadowOffsetY, mShadowSymmetry, values);
+        shadowInsets.set(values[0], values[1], values[2], values[3]);
     }
 
-    protected void updatePadding() {
-        if (mClipToShadowOutline) {
-            super.setPadding((int) (mShadowInsets.left + 0.5F),
-                    (int) (mShadowInsets.top + 0.5F),
-                    (int) (mShadowInsets.right + 0.5F),
-                    (int) (mShadowInsets.bottom + 0.5F));
+    /**
+     * 按阴影的内边距更新布局的内边距，返回内边距是否改变，没有改变时不会请求重新布局。
+     */
+    protected boolean updatePadding() {
+        if (!mClipToShadowOutline) {
+            return false;
+        }
+        final int left = (int) (mShadowInsets.left + 0.5F);
+        final int top = (int) (mShadowInsets.top + 0.5F);
+        final int right = (int) (mShadowInsets.right + 0.5F);
+        final int bottom = (int) (mShadowInsets.bottom + 0.5F);
+        if (left == getPaddingLeft()
+                && top == getPaddingTop()
+                && right == getPaddingRight()
+                && bottom == getPaddingBottom()) {
+            return false;
         }
+        super.setPadding(left, top, right, bottom);
+        return true;
     }
 
     @Override
@@ -259,16 +648,80 @@ public class ShadowLayout extends FrameLayout {
             rebuildOutlinePath();
         }
 
-        drawShadow(canvas);
+        if (mShadowElevation != null) {
+            // 阴影和裁剪都由系统根据outline完成
+            super.draw(canvas);
+        } else if (ShadowMetrics.isEnabled()) {
+            final ShadowMetrics metrics = obtainShadowMetrics();
+            long start = System.nanoTime();
+            if (!isShadowOverlayActive()) {
+                drawShadow(canvas);
+            }
+            long end = System.nanoTime();
+            metrics.recordDrawShadow(end - start);
+            drawContent(canvas);
+            metrics.recordClip(System.nanoTime() - end);
+        } else {
+            if (!isShadowOverlayActive()) {
+                drawShadow(canvas);
+            }
+            drawContent(canvas);
+        }
+
+        if (ShadowMetrics.isEnabled()) {
+            ShadowMetrics.dispatchDraw(this, obtainShadowMetrics());
+        }
+    }
+
+    /**
+     * 获取该布局的绘制统计，未开启{@link ShadowMetrics}时所有统计都为0。
+     */
+    @NonNull
+    public ShadowMetrics getShadowMetrics() {
+        return mShadowMetrics != null ? mShadowMetrics.snapshot() : new ShadowMetrics();
+    }
+
+    private void recordDrawOps(int pathDraws, int bitmapDraws, int paintChanges) {
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordDrawOps(pathDraws, bitmapDraws, paintChanges);
+        }
+    }
 
+    @NonNull
+    private ShadowMetrics obtainShadowMetrics() {
+        if (mShadowMetrics == null) {
+            mShadowMetrics = new ShadowMetrics();
+        }
+        return mShadowMetrics;
+    }
+
+    /**
+     * 绘制内容，需要时裁剪到轮廓内。
+     */
+    private void drawContent(@NonNull Canvas canvas) {
         if (mClipToShadowOutline) {
+            if (drawClipToOutline(canvas)) {
+                return;
+            }
+            if (drawClipToRoundRect(canvas)) {
+                return;
+            }
             if (isInEditMode()) {
                 canvas.save();
                 canvas.clipPath(mShadowOutline);
+                recordDrawOps(1, 0, 0);
                 super.draw(canvas);
                 canvas.restore();
             } else {
-                int saveLayerId = canvas.saveLayer(0, 0, getWidth(), getHeight(), null, Canvas.ALL_SAVE_FLAG);
+                // 轮廓外的内容都会被擦除，图层只需要覆盖轮廓的可见部分
+                mLayerBounds.set(mShadowOutlineBounds);
+                if (!intersectClipBounds(canvas, mLayerBounds)) {
+                    return;
+                }
+                int saveLayerId = canvas.saveLayer(mLayerBounds, null, Canvas.ALL_SAVE_FLAG);
+                if (ShadowMetrics.isEnabled()) {
+                    obtainShadowMetrics().recordSaveLayer();
+                }
                 super.draw(canvas);
                 mShadowOutline.toggleInverseFillType();
                 mShadowPaint.setStyle(Paint.Style.FILL);
@@ -278,44 +731,646 @@ public class ShadowLayout extends FrameLayout {
                 canvas.drawPath(mShadowOutline, mShadowPaint);
                 mShadowPaint.setXfermode(null);
                 mShadowOutline.toggleInverseFillType();
+                recordDrawOps(1, 0, 1);
                 canvas.restoreToCount(saveLayerId);
             }
         } else {
+            releaseContentOutline();
             super.draw(canvas);
         }
     }
 
+    /**
+     * 轮廓是统一圆角的圆角矩形时，在硬件加速下给每个子布局设置裁剪到该圆角矩形的outline，
+     * 由渲染线程直接裁剪，不需要离屏图层。
+     * 布局自身有背景或前景、子布局有变换或elevation时无法这样裁剪，会恢复子布局原来的outline。
+     */
+    private boolean drawClipToOutline(@NonNull Canvas canvas) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        if (!canClipContentToOutline()) {
+            releaseContentOutline();
+            return false;
+        }
+        if (!canvas.isHardwareAccelerated()) {
+            // 软件绘制时outline不会裁剪，保留子布局的outline，由图层裁剪
+            return false;
+        }
+        final int offsetX = getScrollX();
+        final int offsetY = getScrollY();
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            final View child = getChildAt(i);
+            ShadowContentOutline contentOutline;
+            if (child.getOutlineProvider() instanceof ShadowContentOutline) {
+                contentOutline = (ShadowContentOutline) child.getOutlineProvider();
+            } else {
+                contentOutline = new ShadowContentOutline(child);
+            }
+            contentOutline.update(child, mClipOutlineRect, mClipOutlineRadius, offsetX, offsetY);
+        }
+        mContentOutlineApplied = true;
+        super.draw(canvas);
+        return true;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean canClipContentToOutline() {
+        if (mClipOutlineRadius < 0 || getBackground() != null || getForeground() != null) {
+            return false;
+        }
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            final View child = getChildAt(i);
+            // outline会跟随子布局的变换，也会改变子布局自身elevation阴影的形状
+            if (!child.getMatrix().isIdentity() || child.getZ() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseContentOutline() {
+        if (!mContentOutlineApplied) {
+            return;
+        }
+        mContentOutlineApplied = false;
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            releaseContentOutline(getChildAt(i));
+        }
+    }
+
+    private static void releaseContentOutline(@NonNull View child) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && child.getOutlineProvider() instanceof ShadowContentOutline) {
+            ((ShadowContentOutline) child.getOutlineProvider()).release(child);
+        }
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        releaseContentOutline(child);
+    }
+
+    /**
+     * 无法通过子布局的outline裁剪时，在硬件加速下把内容记录到裁剪到轮廓的{@link RenderNode}中，
+     * 由渲染线程直接裁剪，不需要离屏图层。
+     */
+    private boolean drawClipToRoundRect(@NonNull Canvas canvas) {
+        if (mClipOutlineRadius < 0
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                || !canvas.isHardwareAccelerated()) {
+            return false;
+        }
+        if (mShadowClipNode == null) {
+            mShadowClipNode = new ShadowClipNode();
+        }
+        Canvas recordingCanvas = mShadowClipNode.beginRecording(getWidth(), getHeight(),
+                mClipOutlineRect, mClipOutlineRadius);
+        try {
+            super.draw(recordingCanvas);
+        } finally {
+            mShadowClipNode.endRecording(canvas);
+        }
+        return true;
+    }
+
     protected void drawShadow(@NonNull Canvas canvas) {
-        int saveLayerId;
+        if (!hasShadow()) {
+            return;
+        }
 
-        if (isInnerShadow()) {
-            saveLayerId = canvas.saveLayer(0, 0, getWidth(), getHeight(), null, Canvas.ALL_SAVE_FLAG);
-        } else if (isOuterShadow()) {
-            saveLayerId = canvas.saveLayer(
-                    mShadowRadius + mShadowOffsetX,
-                    mShadowRadius + mShadowOffsetY,
-                    getWidth() - mShadowRadius + mShadowOffsetX,
-                    getHeight() - mShadowRadius + mShadowOffsetY,
-                    null, Canvas.ALL_SAVE_FLAG
-            );
-        } else {
+        if (mShadowLevels != null && isOuterShadow() && !isInEditMode() && drawShadowLevels(canvas)) {
             return;
         }
 
-        mShadowPaint.setStyle(Paint.Style.FILL);
+        if ((mShadowCacheEnabled || mShadowBlur != SHADOW_BLUR_PLATFORM) && !isInEditMode()) {
+            drawShadowCache(canvas);
+            return;
+        }
+
+        if (drawShadowNode(canvas)) {
+            return;
+        }
+
+        if (!calcShadowExtent(mLayerBounds) || !intersectClipBounds(canvas, mLayerBounds)) {
+            return;
+        }
+        drawShadowPass(canvas, mLayerBounds);
+    }
+
+    private void drawShadowPass(@NonNull Canvas canvas, @NonNull RectF layerBounds) {
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowRender();
+        }
+        if (isShadowClipOut(canvas)) {
+            int saveCount = canvas.save();
+            canvas.clipRect(layerBounds);
+            ShadowRenderer.getMainRenderer().drawShadowClipOut(canvas, mShadowOutline,
+                    mShadowRadius, mShadowOffsetX, mShadowOffsetY, mShadowColor);
+            canvas.restoreToCount(saveCount);
+            // 裁剪掉轮廓和绘制阴影
+            recordDrawOps(2, 0, 1);
+            return;
+        }
+        int saveLayerId = canvas.saveLayer(layerBounds, null, Canvas.ALL_SAVE_FLAG);
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordSaveLayer();
+        }
+        ShadowRenderer.getMainRenderer().drawShadow(canvas, mShadowOutline,
+                mShadowRadius, mShadowOffsetX, mShadowOffsetY, mShadowColor);
+        canvas.restoreToCount(saveLayerId);
+        // 绘制阴影和擦除轮廓内部
+        recordDrawOps(2, 0, 2);
+    }
+
+    /**
+     * 在硬件加速下把阴影记录到单独的{@link RenderNode}中，只有阴影参数或轮廓改变时才重新记录，
+     * 子控件刷新导致的重绘只需要回放该节点。
+     */
+    private boolean drawShadowNode(@NonNull Canvas canvas) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                || !canvas.isHardwareAccelerated()
+                || isInEditMode()) {
+            return false;
+        }
+        if (mShadowNode == null) {
+            mShadowNode = new ShadowNode();
+            mShadowNodeInvalidate = true;
+        }
+        if (mShadowNodeInvalidate || !mShadowNode.isRecorded()) {
+            mShadowNodeInvalidate = false;
+            if (!calcShadowExtent(mLayerBounds)) {
+                mShadowNode.discard();
+                return true;
+            }
+            Canvas recordingCanvas = mShadowNode.beginRecording(mLayerBounds);
+            try {
+                drawShadowPass(recordingCanvas, mLayerBounds);
+            } finally {
+                mShadowNode.endRecording();
+            }
+        } else if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowCacheHit();
+        }
+        mShadowNode.draw(canvas);
+        return true;
+    }
+
+    private boolean isShadowClipOut(@NonNull Canvas canvas) {
+        switch (mShadowErase) {
+            case SHADOW_ERASE_CLIP_OUT:
+                return true;
+            case SHADOW_ERASE_LAYER:
+                return false;
+            case SHADOW_ERASE_AUTO:
+            default:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && canvas.isHardwareAccelerated();
+        }
+    }
+
+    /**
+     * 阴影的实际范围：轮廓按偏移移动并向外扩展模糊范围，再限制在阴影的绘制范围内。
+     * 范围为空时返回false，不需要绘制。
+     */
+    private boolean calcShadowExtent(@NonNull RectF layerBounds) {
+        if (mShadowOutline.isEmpty()) {
+            return false;
+        }
+        final float blurReach = calcBlurReach();
+        layerBounds.set(mShadowOutlineBounds);
+        layerBounds.offset(mShadowOffsetX, mShadowOffsetY);
+        layerBounds.inset(-blurReach, -blurReach);
+        calcShadowBounds(getWidth(), getHeight(), mShadowBounds);
+        return layerBounds.intersect(mShadowBounds);
+    }
+
+    private boolean intersectClipBounds(@NonNull Canvas canvas, @NonNull RectF bounds) {
+        if (!canvas.getClipBounds(mClipBounds)) {
+            return false;
+        }
+        return bounds.intersect(mClipBounds.left, mClipBounds.top, mClipBounds.right, mClipBounds.bottom);
+    }
+
+    private float calcBlurReach() {
+        return calcBlurReach(mShadowRadius);
+    }
 
-        mShadowPaint.setShadowLayer(Math.abs(mShadowRadius) * 0.75F, mShadowOffsetX, mShadowOffsetY, mShadowColor);
-        mShadowPaint.setColor(Color.TRANSPARENT);
+    /**
+     * 阴影半径为shadowRadius时模糊向外扩散的最大范围
+     */
+    static float calcBlurReach(float shadowRadius) {
+        return Math.abs(shadowRadius) * 1.5F + 2F;
+    }
+
+    /**
+     * 预渲染的阴影可用时在两级之间混合绘制，否则提交后台渲染并返回false，由调用方按当前的半径绘制。
+     */
+    private boolean drawShadowLevels(@NonNull Canvas canvas) {
+        final ShadowLevels levels = mShadowLevels;
+        if (!levels.isValid(mShadowOffsetX, mShadowOffsetY, mShadowBlur)) {
+            final ShadowCacheTask task = mShadowLevelsTask;
+            if (task != null
+                    && task.mShadowOffsetX == mShadowOffsetX
+                    && task.mShadowOffsetY == mShadowOffsetY
+                    && task.mShadowBlur == mShadowBlur) {
+                // 相同的参数已经在后台渲染
+                return false;
+            }
+            if (mShadowOutline.isEmpty()) {
+                return false;
+            }
+            calcShadowBounds(getWidth(), getHeight(), levels.getMaxRadius(), mShadowBounds);
+            final ShadowCacheSpec spec = mShadowLevelsSpec;
+            spec.left = (int) Math.floor(mShadowBounds.left);
+            spec.top = (int) Math.floor(mShadowBounds.top);
+            spec.width = (int) Math.ceil(mShadowBounds.right) - spec.left;
+            spec.height = (int) Math.ceil(mShadowBounds.bottom) - spec.top;
+            spec.layoutWidth = getWidth();
+            spec.layoutHeight = getHeight();
+            if (spec.width <= 0 || spec.height <= 0) {
+                return false;
+            }
+            submitShadowLevelsTask(levels, spec);
+            return false;
+        }
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowCacheHit();
+        }
+        mShadowPaint.setStyle(Paint.Style.FILL);
+        mShadowPaint.clearShadowLayer();
         mShadowPaint.setXfermode(null);
-        canvas.drawPath(mShadowOutline, mShadowPaint);
+        final int bitmapDraws = levels.draw(canvas, mShadowPaint, mShadowRadius, mShadowColor);
+        recordDrawOps(0, bitmapDraws, bitmapDraws);
+        return true;
+    }
+
+    private void submitShadowLevelsTask(@NonNull ShadowLevels levels, @NonNull ShadowCacheSpec spec) {
+        // 后台线程会写入这些位图，完成前不能绘制
+        levels.invalidate();
+        final ShadowCacheTask task = new ShadowCacheTask(this, null, levels, spec, new Path(mShadowOutline));
+        cancelShadowLevelsTask();
+        mShadowLevelsTask = task;
+        getShadowCacheExecutor().execute(task);
+    }
+
+    private void cancelShadowLevelsTask() {
+        if (mShadowLevelsTask != null) {
+            mShadowLevelsTask.cancel();
+            mShadowLevelsTask = null;
+        }
+    }
 
+    private void drawShadowCache(@NonNull Canvas canvas) {
+        if (mShadowCacheInvalidate) {
+            rebuildShadowCache();
+        } else if (mShadowCacheBitmap != null && ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowCacheHit();
+        }
+        if (mShadowCacheBitmap == null) {
+            return;
+        }
+        mShadowPaint.setStyle(Paint.Style.FILL);
         mShadowPaint.clearShadowLayer();
-        mShadowPaint.setColor(Color.BLACK);
-        mShadowPaint.setXfermode(mXfermodeDstOut);
-        canvas.drawPath(mShadowOutline, mShadowPaint);
         mShadowPaint.setXfermode(null);
+        mShadowPaint.setColor(mShadowColor);
+        final ShadowCacheSpec spec = mShadowCacheSpec;
+        if (spec.stretchX < 0 && spec.stretchY < 0) {
+            canvas.drawBitmap(mShadowCacheBitmap, spec.left, spec.top, mShadowPaint);
+            recordDrawOps(0, 1, 1);
+        } else {
+            drawStretchedShadowCache(canvas, spec);
+        }
+    }
 
-        canvas.restoreToCount(saveLayerId);
+    /**
+     * 以九宫格的方式绘制阴影缓存，可拉伸的行和列各只有1像素，被拉伸到布局实际尺寸。
+     */
+    private void drawStretchedShadowCache(@NonNull Canvas canvas, @NonNull ShadowCacheSpec spec) {
+        final int bitmapWidth = spec.width;
+        final int bitmapHeight = spec.height;
+        final int stretchX = spec.stretchX;
+        final int stretchY = spec.stretchY;
+        final int dx = stretchX < 0 ? 0 : getWidth() - spec.layoutWidth;
+        final int dy = stretchY < 0 ? 0 : getHeight() - spec.layoutHeight;
+        final int columns = stretchX < 0 ? 1 : 3;
+        final int rows = stretchY < 0 ? 1 : 3;
+        int bitmapDraws = 0;
+        for (int row = 0; row < rows; row++) {
+            final int srcTop = rows == 1 ? 0 : (row == 0 ? 0 : (row == 1 ? stretchY : stretchY + 1));
+            final int srcBottom = rows == 1 ? bitmapHeight : (row == 0 ? stretchY : (row == 1 ? stretchY + 1 : bitmapHeight));
+            if (srcTop >= srcBottom) {
+                continue;
+            }
+            final int dstTop = srcTop + (row == 2 ? dy : 0);
+            final int dstBottom = srcBottom + (rows == 1 || row == 0 ? 0 : dy);
+            for (int column = 0; column < columns; column++) {
+                final int srcLeft = columns == 1 ? 0 : (column == 0 ? 0 : (column == 1 ? stretchX : stretchX + 1));
+                final int srcRight = columns == 1 ? bitmapWidth : (column == 0 ? stretchX : (column == 1 ? stretchX + 1 : bitmapWidth));
+                if (srcLeft >= srcRight) {
+                    continue;
+                }
+                final int dstLeft = srcLeft + (column == 2 ? dx : 0);
+                final int dstRight = srcRight + (columns == 1 || column == 0 ? 0 : dx);
+                mShadowCacheSrc.set(srcLeft, srcTop, srcRight, srcBottom);
+                mShadowCacheDst.set(spec.left + dstLeft, spec.top + dstTop,
+                        spec.left + dstRight, spec.top + dstBottom);
+                canvas.drawBitmap(mShadowCacheBitmap, mShadowCacheSrc, mShadowCacheDst, mShadowPaint);
+                bitmapDraws++;
+            }
+        }
+        recordDrawOps(0, bitmapDraws, 1);
+    }
+
+    private void rebuildShadowCache() {
+        mShadowCacheInvalidate = false;
+        final ShadowCacheSpec spec = mShadowCacheNextSpec;
+        if (mShadowOutline.isEmpty() || !calcShadowCacheSpec(spec)) {
+            releaseShadowCache();
+            return;
+        }
+        ShadowKey shadowKey = null;
+        if (buildShadowKey(spec, mShadowKeyBuilder)) {
+            if (mShadowCacheBitmap != null && mShadowKeyBuilder.matches(mShadowCacheKey)) {
+                mShadowCacheSpec.set(spec);
+                cancelShadowCacheTask();
+                if (ShadowMetrics.isEnabled()) {
+                    obtainShadowMetrics().recordShadowCacheHit();
+                }
+                return;
+            }
+            if (mShadowCacheTask != null && mShadowKeyBuilder.matches(mShadowCacheTask.mShadowKey)) {
+                // 相同的阴影已经在后台渲染
+                return;
+            }
+            shadowKey = mShadowKeyBuilder.build();
+            Bitmap bitmap = ShadowCache.getInstance().get(shadowKey);
+            if (bitmap != null) {
+                applyShadowCache(bitmap, shadowKey, spec);
+                if (ShadowMetrics.isEnabled()) {
+                    obtainShadowMetrics().recordShadowCacheHit();
+                }
+                return;
+            }
+        }
+        if (mShadowCacheAsync) {
+            submitShadowCacheTask(shadowKey, spec);
+            return;
+        }
+        final Bitmap bitmap;
+        if (shadowKey == null
+                && mShadowCacheKey == null
+                && mShadowCacheBitmap != null
+                && mShadowCacheBitmap.getWidth() == spec.width
+                && mShadowCacheBitmap.getHeight() == spec.height) {
+            bitmap = mShadowCacheBitmap;
+            bitmap.eraseColor(Color.TRANSPARENT);
+        } else {
+            // 共享的位图不能被修改，需要重新创建
+            bitmap = Bitmap.createBitmap(spec.width, spec.height, Bitmap.Config.ALPHA_8);
+        }
+        ShadowRenderer.getMainRenderer().renderShadow(bitmap, spec.left, spec.top,
+                getShadowCacheOutline(spec, mShadowStretchOutline), mClipOutlineRadius,
+                mShadowRadius, mShadowOffsetX, mShadowOffsetY, mShadowBlur);
+        if (shadowKey != null) {
+            ShadowCache.getInstance().put(shadowKey, bitmap);
+        }
+        applyShadowCache(bitmap, shadowKey, spec);
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowRender();
+        }
+    }
+
+    private void applyShadowCache(@NonNull Bitmap bitmap, @Nullable ShadowKey shadowKey, @NonNull ShadowCacheSpec spec) {
+        mShadowCacheBitmap = bitmap;
+        mShadowCacheKey = shadowKey;
+        mShadowCacheSpec.set(spec);
+        cancelShadowCacheTask();
+    }
+
+    /**
+     * 在后台线程渲染阴影，完成前继续绘制之前的阴影（没有则不绘制），完成后只刷新一次。
+     */
+    private void submitShadowCacheTask(@Nullable ShadowKey shadowKey, @NonNull ShadowCacheSpec spec) {
+        final Path shadowOutline = new Path(getShadowCacheOutline(spec, mShadowStretchOutline));
+        final ShadowCacheTask task = new ShadowCacheTask(this, shadowKey, null, spec, shadowOutline);
+        cancelShadowCacheTask();
+        mShadowCacheTask = task;
+        getShadowCacheExecutor().execute(task);
+    }
+
+    private void cancelShadowCacheTask() {
+        if (mShadowCacheTask != null) {
+            mShadowCacheTask.cancel();
+            mShadowCacheTask = null;
+        }
+    }
+
+    private void onShadowCacheTaskFinished(@NonNull ShadowCacheTask task) {
+        if (task.mShadowLevels != null) {
+            onShadowLevelsTaskFinished(task);
+            return;
+        }
+        if (mShadowCacheTask != task) {
+            return;
+        }
+        mShadowCacheTask = null;
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowRender();
+        }
+        if (task.mShadowKey != null) {
+            ShadowCache.getInstance().put(task.mShadowKey, task.mBitmap);
+        }
+        if (!mShadowCacheInvalidate) {
+            applyShadowCache(task.mBitmap, task.mShadowKey, task.mSpec);
+        }
+        // 几何已经改变时丢弃结果，重新绘制时会再次构建
+        invalidate();
+    }
+
+    private void onShadowLevelsTaskFinished(@NonNull ShadowCacheTask task) {
+        if (mShadowLevelsTask != task) {
+            return;
+        }
+        mShadowLevelsTask = null;
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordShadowRender();
+        }
+        task.mShadowLevels.onRendered(task.mSpec.left, task.mSpec.top,
+                task.mShadowOffsetX, task.mShadowOffsetY, task.mShadowBlur);
+        invalidate();
+    }
+
+    @NonNull
+    private Path getShadowCacheOutline(@NonNull ShadowCacheSpec spec, @NonNull Path stretchOutline) {
+        if (spec.layoutWidth == getWidth() && spec.layoutHeight == getHeight()) {
+            return mShadowOutline;
+        }
+        stretchOutline.rewind();
+        mShadowOutlineProvider.buildShadowOutline(this, stretchOutline, mShadowInsets,
+                spec.layoutWidth, spec.layoutHeight);
+        if (!stretchOutline.isEmpty()) {
+            stretchOutline.close();
+        }
+        return stretchOutline;
+    }
+
+    /**
+     * 计算缓存位图的位置和尺寸。
+     * <p>
+     * 轮廓可拉伸时，只需要渲染去掉中间重复部分后的最小布局尺寸，并记录可拉伸的行列，
+     * 这样布局尺寸改变时不需要重新模糊。
+     */
+    private boolean calcShadowCacheSpec(@NonNull ShadowCacheSpec spec) {
+        int layoutWidth = getWidth();
+        int layoutHeight = getHeight();
+        int stretchX = -1;
+        int stretchY = -1;
+        if (mShadowOutlineProvider != null
+                && mShadowOutlineProvider.getShadowStretchMargins(this, mShadowInsets, mShadowStretchMargins)) {
+            // 模糊的扩散范围，需要保证可拉伸的行列不受轮廓拐角的影响
+            final float blurReach = calcBlurReach();
+            final int reachX = (int) Math.ceil(blurReach + Math.abs(mShadowOffsetX));
+            final int reachY = (int) Math.ceil(blurReach + Math.abs(mShadowOffsetY));
+            final int minStretchX = (int) Math.ceil(mShadowStretchMargins.left) + reachX;
+            final int minStretchY = (int) Math.ceil(mShadowStretchMargins.top) + reachY;
+            final int minWidth = minStretchX + 1 + reachX + (int) Math.ceil(mShadowStretchMargins.right);
+            final int minHeight = minStretchY + 1 + reachY + (int) Math.ceil(mShadowStretchMargins.bottom);
+            if (layoutWidth > minWidth) {
+                layoutWidth = minWidth;
+                stretchX = minStretchX;
+            }
+            if (layoutHeight > minHeight) {
+                layoutHeight = minHeight;
+                stretchY = minStretchY;
+            }
+        }
+        calcShadowBounds(layoutWidth, layoutHeight, mShadowBounds);
+        final int left = (int) Math.floor(mShadowBounds.left);
+        final int top = (int) Math.floor(mShadowBounds.top);
+        spec.left = left;
+        spec.top = top;
+        spec.width = (int) Math.ceil(mShadowBounds.right) - left;
+        spec.height = (int) Math.ceil(mShadowBounds.bottom) - top;
+        spec.layoutWidth = layoutWidth;
+        spec.layoutHeight = layoutHeight;
+        spec.stretchX = stretchX < 0 ? -1 : stretchX - left;
+        spec.stretchY = stretchY < 0 ? -1 : stretchY - top;
+        return spec.width > 0 && spec.height > 0;
+    }
+
+    /**
+     * 生成当前阴影的共享缓存key，轮廓无法描述时返回false。
+     * <p>
+     * 阴影位图只保存透明度，颜色在绘制时才着色，所以key中不包含阴影颜色。
+     */
+    private boolean buildShadowKey(@NonNull ShadowCacheSpec spec, @NonNull ShadowKey.Builder builder) {
+        if (mShadowOutlineProvider == null) {
+            return false;
+        }
+        builder.reset(mShadowOutlineProvider.getClass());
+        if (!mShadowOutlineProvider.buildShadowOutlineKey(this, builder)) {
+            return false;
+        }
+        builder.append(spec.layoutWidth)
+                .append(spec.layoutHeight)
+                .append(mShadowInsets.left)
+                .append(mShadowInsets.top)
+                .append(mShadowInsets.right)
+                .append(mShadowInsets.bottom)
+                .append(mShadowRadius)
+                .append(mShadowOffsetX)
+                .append(mShadowOffsetY)
+                .append(mShadowBlur);
+        return true;
+    }
+
+    private void releaseShadowCache() {
+        mShadowCacheBitmap = null;
+        mShadowCacheKey = null;
+        cancelShadowCacheTask();
+        mShadowCacheInvalidate = true;
+    }
+
+    /**
+     * 阴影的绘制范围，内阴影不会超出布局，外阴影会向外扩展阴影半径并跟随偏移。
+     */
+    private void calcShadowBounds(int width, int height, @NonNull RectF shadowBounds) {
+        calcShadowBounds(width, height, mShadowRadius, shadowBounds);
+    }
+
+    private void calcShadowBounds(int width, int height, float shadowRadius, @NonNull RectF shadowBounds) {
+        if (shadowRadius < 0) {
+            shadowBounds.set(
+                    shadowRadius + mShadowOffsetX,
+                    shadowRadius + mShadowOffsetY,
+                    width - shadowRadius + mShadowOffsetX,
+                    height - shadowRadius + mShadowOffsetY
+            );
+        } else {
+            shadowBounds.set(0, 0, width, height);
+        }
+    }
+
+    /**
+     * 外阴影需要绘制到布局范围以外：开启浮层时添加到父布局的浮层中，否则关闭父布局的clipChildren。
+     * 只在内外阴影切换、浮层开关或者依附状态改变时调用，并且只在状态变化时修改父布局。
+     */
+    private void updateShadowOverlay() {
+        final ViewParent parent = getParent();
+        final boolean useOverlay = mShadowOverlayEnabled
+                && mAttachedToWindow
+                && isOuterShadow()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                && parent instanceof ViewGroup;
+        if (useOverlay) {
+            if (mShadowOverlay == null) {
+                mShadowOverlay = new ShadowOverlay(this);
+            }
+            mShadowOverlay.attach((ViewGroup) parent);
+        } else if (mShadowOverlay != null) {
+            mShadowOverlay.detach();
+        }
+        final boolean disableParentClip = mAttachedToWindow && isOuterShadow() && !useOverlay;
+        if (mParentClipChildrenDisabled != disableParentClip) {
+            mParentClipChildrenDisabled = disableParentClip;
+            setParentClipChildren(!disableParentClip);
+        }
+    }
+
+    /**
+     * 由{@link ShadowOverlay}在父布局的浮层中绘制阴影，画布已经变换到布局的坐标系。
+     */
+    void drawOverlayShadow(@NonNull Canvas canvas) {
+        if (mShadowOutlineInvalidate) {
+            rebuildOutlinePath();
+        }
+        if (mShadowElevation != null) {
+            return;
+        }
+        drawShadow(canvas);
+    }
+
+    /**
+     * 计算浮层需要覆盖的阴影范围，坐标为布局自身的坐标系。
+     */
+    boolean calcOverlayShadowExtent(@NonNull RectF extent) {
+        if (mShadowOutlineInvalidate) {
+            rebuildOutlinePath();
+        }
+        if (mShadowElevation != null || !hasShadow()) {
+            return false;
+        }
+        return calcShadowExtent(extent);
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if (mShadowOverlay != null) {
+            // 阴影在父布局的浮层中，需要同时刷新浮层
+            mShadowOverlay.invalidateSelf();
+        }
     }
 
     private void setParentClipChildren(boolean clipChildren) {
@@ -327,6 +1382,9 @@ public class ShadowLayout extends FrameLayout {
     }
 
     private void rebuildOutlinePath() {
+        if (ShadowMetrics.isEnabled()) {
+            obtainShadowMetrics().recordOutlineRebuild();
+        }
         mShadowOutline.reset();
         mShadowOutline.rewind();
         if (mShadowOutlineProvider != null) {
@@ -335,12 +1393,334 @@ public class ShadowLayout extends FrameLayout {
         if (!mShadowOutline.isEmpty()) {
             mShadowOutline.close();
         }
+        mShadowOutline.computeBounds(mShadowOutlineBounds, true);
+        mClipOutlineRadius = -1F;
+        if (mShadowOutlineProvider != null && !mShadowOutline.isEmpty()) {
+            mClipOutlineRadius = mShadowOutlineProvider.getShadowOutlineRoundRect(this, mShadowInsets, mClipOutlineRect);
+        }
     }
 
     @Override
     public void setPadding(int left, int top, int right, int bottom) {
     }
 
+    @NonNull
+    private static Executor getShadowCacheExecutor() {
+        if (sShadowCacheExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                    10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ShadowLayout-cache");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sShadowCacheExecutor = executor;
+        }
+        return sShadowCacheExecutor;
+    }
+
+    /**
+     * 阴影缓存位图的位置和尺寸
+     */
+    private static final class ShadowCacheSpec {
+        // 位图左上角在布局中的位置
+        int left;
+        int top;
+        // 位图尺寸
+        int width;
+        int height;
+        // 渲染时使用的布局尺寸，可拉伸时小于布局的实际尺寸
+        int layoutWidth;
+        int layoutHeight;
+        // 位图中可拉伸的列和行，-1表示不可拉伸
+        int stretchX = -1;
+        int stretchY = -1;
+
+        void set(@NonNull ShadowCacheSpec spec) {
+            left = spec.left;
+            top = spec.top;
+            width = spec.width;
+            height = spec.height;
+            layoutWidth = spec.layoutWidth;
+            layoutHeight = spec.layoutHeight;
+            stretchX = spec.stretchX;
+            stretchY = spec.stretchY;
+        }
+    }
+
+    /**
+     * 在后台线程渲染阴影缓存或各级预渲染阴影，完成后回到主线程交给布局。
+     */
+    private static final class ShadowCacheTask implements Runnable {
+        private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+        private static final ThreadLocal<ShadowRenderer> sRenderer = new ThreadLocal<ShadowRenderer>() {
+            @Override
+            protected ShadowRenderer initialValue() {
+                return new ShadowRenderer();
+            }
+        };
+
+        // 排队期间不持有布局，只在主线程读取
+        private final WeakReference<ShadowLayout> mShadowLayoutRef;
+        private final ShadowKey mShadowKey;
+        // 不为空时渲染各级预渲染阴影，不创建缓存位图
+        private final ShadowLevels mShadowLevels;
+        private final ShadowCacheSpec mSpec = new ShadowCacheSpec();
+        private final Path mShadowOutline;
+        private final float mShadowRadius;
+        private final float mShadowOffsetX;
+        private final float mShadowOffsetY;
+        private final int mShadowBlur;
+        private final float mCornerRadius;
+
+        private volatile boolean mCancelled = false;
+        private boolean mRendered = false;
+        private Bitmap mBitmap = null;
+
+        private ShadowCacheTask(@NonNull ShadowLayout shadowLayout,
+                                @Nullable ShadowKey shadowKey,
+                                @Nullable ShadowLevels shadowLevels,
+                                @NonNull ShadowCacheSpec spec,
+                                @NonNull Path shadowOutline) {
+            mShadowLayoutRef = new WeakReference<>(shadowLayout);
+            mShadowKey = shadowKey;
+            mShadowLevels = shadowLevels;
+            mSpec.set(spec);
+            mShadowOutline = shadowOutline;
+            mShadowRadius = shadowLayout.mShadowRadius;
+            mShadowOffsetX = shadowLayout.mShadowOffsetX;
+            mShadowOffsetY = shadowLayout.mShadowOffsetY;
+            mShadowBlur = shadowLayout.mShadowBlur;
+            mCornerRadius = shadowLayout.mClipOutlineRadius;
+        }
+
+        /**
+         * 在主线程调用，被替换或释放的任务不再渲染，已经渲染的结果也不再交给布局。
+         */
+        @MainThread
+        void cancel() {
+            mCancelled = true;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                // 已经过期，不需要再渲染
+                return;
+            }
+            if (!mRendered) {
+                if (mShadowLevels != null) {
+                    mShadowLevels.render(sRenderer.get(), mShadowOutline, mCornerRadius,
+                            mSpec.left, mSpec.top, mSpec.width, mSpec.height,
+                            mShadowOffsetX, mShadowOffsetY, mShadowBlur);
+                } else {
+                    Bitmap bitmap = Bitmap.createBitmap(mSpec.width, mSpec.height, Bitmap.Config.ALPHA_8);
+                    sRenderer.get().renderShadow(bitmap, mSpec.left, mSpec.top, mShadowOutline, mCornerRadius,
+                            mShadowRadius, mShadowOffsetX, mShadowOffsetY, mShadowBlur);
+                    mBitmap = bitmap;
+                }
+                mRendered = true;
+                sMainHandler.post(this);
+            } else {
+                final ShadowLayout shadowLayout = mShadowLayoutRef.get();
+                if (shadowLayout != null) {
+                    shadowLayout.onShadowCacheTaskFinished(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * 子布局的outline，裁剪到布局的圆角矩形轮廓内，坐标为子布局自身的坐标系。
+     * 移除或不再需要时恢复子布局原来的设置。
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static final class ShadowContentOutline extends ViewOutlineProvider {
+        private final ViewOutlineProvider mOriginalOutlineProvider;
+        private final boolean mOriginalClipToOutline;
+
+        private final Rect mRect = new Rect();
+        private float mRadius = -1F;
+
+        private ShadowContentOutline(@NonNull View child) {
+            mOriginalOutlineProvider = child.getOutlineProvider();
+            mOriginalClipToOutline = child.getClipToOutline();
+            child.setOutlineProvider(this);
+            child.setClipToOutline(true);
+        }
+
+        void update(@NonNull View child, @NonNull RectF roundRect, float radius, int scrollX, int scrollY) {
+            final int dx = child.getLeft() - scrollX;
+            final int dy = child.getTop() - scrollY;
+            final int left = Math.round(roundRect.left) - dx;
+            final int top = Math.round(roundRect.top) - dy;
+            final int right = Math.round(roundRect.right) - dx;
+            final int bottom = Math.round(roundRect.bottom) - dy;
+            if (mRect.left != left || mRect.top != top || mRect.right != right || mRect.bottom != bottom
+                    || mRadius != radius) {
+                mRect.set(left, top, right, bottom);
+                mRadius = radius;
+                child.invalidateOutline();
+            }
+        }
+
+        void release(@NonNull View child) {
+            child.setOutlineProvider(mOriginalOutlineProvider);
+            child.setClipToOutline(mOriginalClipToOutline);
+        }
+
+        @Override
+        public void getOutline(View view, Outline outline) {
+            outline.setRoundRect(mRect, mRadius);
+        }
+    }
+
+    /**
+     * 裁剪到圆角矩形轮廓的内容节点
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static final class ShadowClipNode {
+        private final RenderNode mRenderNode = new RenderNode("ShadowLayout");
+        private final Outline mOutline = new Outline();
+
+        @NonNull
+        Canvas beginRecording(int width, int height, @NonNull RectF roundRect, float radius) {
+            mRenderNode.setPosition(0, 0, width, height);
+            mOutline.setRoundRect(Math.round(roundRect.left), Math.round(roundRect.top),
+                    Math.round(roundRect.right), Math.round(roundRect.bottom), radius);
+            mRenderNode.setOutline(mOutline);
+            mRenderNode.setClipToOutline(true);
+            return mRenderNode.beginRecording(width, height);
+        }
+
+        void endRecording(@NonNull Canvas canvas) {
+            mRenderNode.endRecording();
+            canvas.drawRenderNode(mRenderNode);
+        }
+    }
+
+    /**
+     * 记录阴影绘制指令的节点，节点的位置就是阴影的范围，不会裁剪到布局内。
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static final class ShadowNode {
+        private final RenderNode mRenderNode = new RenderNode("ShadowLayout#shadow");
+        private final Rect mBounds = new Rect();
+        private boolean mRecorded = false;
+
+        boolean isRecorded() {
+            return mRecorded && mRenderNode.hasDisplayList();
+        }
+
+        @NonNull
+        Canvas beginRecording(@NonNull RectF shadowBounds) {
+            shadowBounds.roundOut(mBounds);
+            mRenderNode.setPosition(mBounds);
+            mRenderNode.setClipToBounds(false);
+            Canvas canvas = mRenderNode.beginRecording(mBounds.width(), mBounds.height());
+            canvas.translate(-mBounds.left, -mBounds.top);
+            return canvas;
+        }
+
+        void endRecording() {
+            mRenderNode.endRecording();
+            mRecorded = true;
+        }
+
+        void draw(@NonNull Canvas canvas) {
+            if (mRecorded) {
+                canvas.drawRenderNode(mRenderNode);
+            }
+        }
+
+        void discard() {
+            mRenderNode.discardDisplayList();
+            mRecorded = false;
+        }
+    }
+
+    /**
+     * 使用系统elevation阴影时提供圆角矩形的outline，并在停用时恢复布局原来的设置。
+     */
+    @RequiresApi(Build.VERSION_CODES.P)
+    private static final class ShadowElevation extends ViewOutlineProvider {
+        // 系统主题中环境光和点光源阴影的默认透明度，颜色的透明度会与之相乘
+        private static final float AMBIENT_SHADOW_ALPHA = 0.039F;
+        private static final float SPOT_SHADOW_ALPHA = 0.19F;
+
+        private final View mView;
+        private final ViewOutlineProvider mOriginalOutlineProvider;
+        private final float mOriginalElevation;
+        private final boolean mOriginalClipToOutline;
+        private final int mOriginalAmbientShadowColor;
+        private final int mOriginalSpotShadowColor;
+
+        private final RectF mRoundRect = new RectF();
+        private float mRadius = 0F;
+
+        private ShadowElevation(@NonNull View view) {
+            mView = view;
+            mOriginalOutlineProvider = view.getOutlineProvider();
+            mOriginalElevation = view.getElevation();
+            mOriginalClipToOutline = view.getClipToOutline();
+            mOriginalAmbientShadowColor = view.getOutlineAmbientShadowColor();
+            mOriginalSpotShadowColor = view.getOutlineSpotShadowColor();
+            view.setOutlineProvider(this);
+        }
+
+        void update(@NonNull RectF roundRect, float radius, float elevation, int shadowColor, boolean clipToOutline) {
+            mRoundRect.set(roundRect);
+            mRadius = radius;
+            mView.invalidateOutline();
+            mView.setElevation(elevation);
+            mView.setOutlineAmbientShadowColor(scaleShadowAlpha(shadowColor, AMBIENT_SHADOW_ALPHA));
+            mView.setOutlineSpotShadowColor(scaleShadowAlpha(shadowColor, SPOT_SHADOW_ALPHA));
+            mView.setClipToOutline(clipToOutline);
+        }
+
+        void release() {
+            mView.setOutlineProvider(mOriginalOutlineProvider);
+            mView.setElevation(mOriginalElevation);
+            mView.setOutlineAmbientShadowColor(mOriginalAmbientShadowColor);
+            mView.setOutlineSpotShadowColor(mOriginalSpotShadowColor);
+            mView.setClipToOutline(mOriginalClipToOutline);
+        }
+
+        @Override
+        public void getOutline(View view, Outline outline) {
+            outline.setRoundRect(Math.round(mRoundRect.left), Math.round(mRoundRect.top),
+                    Math.round(mRoundRect.right), Math.round(mRoundRect.bottom), mRadius);
+        }
+
+        /**
+         * 补偿主题透明度，使最终的阴影浓度尽量接近阴影颜色的透明度。
+         */
+        private static int scaleShadowAlpha(int shadowColor, float themeAlpha) {
+            int alpha = Math.min(Math.round(Color.alpha(shadowColor) / themeAlpha), 255);
+            return Color.argb(alpha, Color.red(shadowColor), Color.green(shadowColor), Color.blue(shadowColor));
+        }
+    }
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SHADOW_BLUR_PLATFORM, SHADOW_BLUR_GAUSSIAN, SHADOW_BLUR_BOX, SHADOW_BLUR_ANALYTIC})
+    public @interface ShadowBlur {
+    }
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SHADOW_ERASE_AUTO, SHADOW_ERASE_LAYER, SHADOW_ERASE_CLIP_OUT})
+    public @interface ShadowErase {
+    }
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SHADOW_BACKEND_SOFTWARE, SHADOW_BACKEND_ELEVATION})
+    public @interface ShadowBackend {
+    }
+
     public static abstract class ShadowOutlineProvider {
         private WeakReference<ShadowLayout> mShadowLayoutRef = null;
 
@@ -368,5 +1748,107 @@ public class ShadowLayout extends FrameLayout {
                 @NonNull Path shadowOutline,
                 @NonNull RectF shadowInsets
         );
+
+        /**
+         * 获取轮廓在四个方向上不可拉伸的区域大小（从布局边缘算起），返回false表示轮廓不可拉伸。
+         * <p>
+         * 这些区域之外的轮廓在横向或纵向上保持不变，开启阴影缓存时只会渲染一次最小尺寸的阴影，
+         * 再拉伸到布局的实际尺寸。返回true时需要同时实现
+         * {@link #buildShadowOutline(ShadowLayout, Path, RectF, int, int)}。
+         */
+        public boolean getShadowStretchMargins(@NonNull ShadowLayout shadowLayout,
+                                               @NonNull RectF shadowInsets,
+                                               @NonNull RectF stretchMargins) {
+            return false;
+        }
+
+        /**
+         * 以指定的布局尺寸构建阴影轮廓，用于渲染可拉伸的阴影。
+         * <p>
+         * 默认按布局当前的尺寸构建，只有{@link #getShadowStretchMargins(ShadowLayout, RectF, RectF)}返回true时才需要覆盖。
+         */
+        public void buildShadowOutline(@NonNull ShadowLayout shadowLayout,
+                                       @NonNull Path shadowOutline,
+                                       @NonNull RectF shadowInsets,
+                                       int width,
+                                       int height) {
+            buildShadowOutline(shadowLayout, shadowOutline, shadowInsets);
+        }
+
+        /**
+         * 以指定的布局尺寸把轮廓构建到{@link ShadowPathBuffer}中，返回false表示不支持，默认不支持。
+         * <p>
+         * 在主线程调用，实现时只能读取提供者自身的参数，不能修改共享的状态，
+         * 这样得到的轮廓可以直接按内容比较或缓存。
+         */
+        public boolean buildShadowOutline(@NonNull ShadowLayout shadowLayout,
+                                          @NonNull ShadowPathBuffer shadowOutline,
+                                          @NonNull RectF shadowInsets,
+                                          int width,
+                                          int height) {
+            return false;
+        }
+
+        /**
+         * 轮廓是统一圆角的圆角矩形时，在roundRect中返回轮廓的范围并返回圆角半径，否则返回-1。
+         * <p>
+         * 返回圆角半径时，{@link ShadowLayout}可以在硬件加速下直接裁剪子控件，不需要离屏图层。
+         */
+        public float getShadowOutlineRoundRect(@NonNull ShadowLayout shadowLayout,
+                                               @NonNull RectF shadowInsets,
+                                               @NonNull RectF roundRect) {
+            return -1F;
+        }
+
+        /**
+         * 将决定轮廓形状的参数写入key，布局尺寸、阴影内边距、阴影半径和偏移已由{@link ShadowLayout}写入。
+         * 返回true表示轮廓只由这些参数决定，参数相同的阴影可以共享缓存；默认返回false，不参与共享。
+         */
+        public boolean buildShadowOutlineKey(@NonNull ShadowLayout shadowLayout,
+                                             @NonNull ShadowKey.Builder builder) {
+            return false;
+        }
+
+        /**
+         * 不依赖{@link ShadowLayout}，把宽高为width、height的控件的外阴影轮廓构建到{@link ShadowPathBuffer}中，
+         * 轮廓占满控件范围，返回false表示不支持，默认不支持。
+         * <p>
+         * 用于没有阴影布局的场景，例如{@link ShadowItemDecoration}，只能读取提供者自身的参数并写入shadowOutline，
+         * 不能修改任何状态。提供者的参数可能随时在主线程被修改，需要在其他线程构建时使用{@link #snapshot()}返回的快照。
+         */
+        public boolean buildShadowOutline(@NonNull ShadowPathBuffer shadowOutline,
+                                          int width,
+                                          int height) {
+            return false;
+        }
+
+        /**
+         * 同{@link #getShadowOutlineRoundRect(ShadowLayout, RectF, RectF)}，用于不依赖布局的轮廓。
+         */
+        public float getShadowOutlineRoundRect(int width,
+                                               int height,
+                                               @NonNull RectF roundRect) {
+            return -1F;
+        }
+
+        /**
+         * 同{@link #buildShadowOutlineKey(ShadowLayout, ShadowKey.Builder)}，用于不依赖布局的轮廓，
+         * 控件尺寸、阴影半径和偏移已由调用方写入。
+         */
+        public boolean buildShadowOutlineKey(@NonNull ShadowKey.Builder builder) {
+            return false;
+        }
+
+        /**
+         * 返回当前参数的不可变快照，之后修改提供者不会影响快照，快照的参数也不能修改。
+         * 快照不依赖布局的{@link #buildShadowOutline(ShadowPathBuffer, int, int)}、
+         * {@link #getShadowOutlineRoundRect(int, int, RectF)}和{@link #buildShadowOutlineKey(ShadowKey.Builder)}
+         * 可以在任意线程调用，例如在阴影缓存的后台线程中构建轮廓。
+         * 返回null表示不支持，默认不支持。
+         */
+        @Nullable
+        public ShadowOutlineProvider snapshot() {
+            return null;
+        }
     }
 }
@@ -0,0 +1,153 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 阴影半径动画使用的预渲染阴影
+ * <p>
+ * 在动画的半径范围内等间距预先渲染几张阴影蒙版，动画过程中在最接近的两张之间按半径混合，
+ * 不需要每一帧重新模糊。所有蒙版的位置和尺寸相同，覆盖最大半径的阴影范围。
+ * 阴影的透明度通常较低，两张蒙版叠加绘制和线性混合的差异可以忽略。
+ * <p>
+ * 蒙版在阴影缓存的后台线程中渲染，渲染期间不会绘制，完成后在主线程调用{@link #onRendered}。
+ */
+final class ShadowLevels {
+    private static final int LEVEL_COUNT = 4;
+
+    private final float[] mRadii = new float[LEVEL_COUNT];
+    private final Bitmap[] mBitmaps = new Bitmap[LEVEL_COUNT];
+
+    private boolean mValid = false;
+    private int mLeft = 0;
+    private int mTop = 0;
+    private float mOffsetX = 0F;
+    private float mOffsetY = 0F;
+    private int mShadowBlur = ShadowLayout.SHADOW_BLUR_PLATFORM;
+
+    /**
+     * @param recycled 上一次动画的预渲染阴影，复用它的位图
+     */
+    ShadowLevels(float fromRadius, float toRadius, @Nullable ShadowLevels recycled) {
+        if (recycled != null) {
+            System.arraycopy(recycled.mBitmaps, 0, mBitmaps, 0, LEVEL_COUNT);
+        }
+        final float min = Math.min(Math.abs(fromRadius), Math.abs(toRadius));
+        final float max = Math.max(Math.abs(fromRadius), Math.abs(toRadius));
+        final float sign = fromRadius < 0 ? -1F : 1F;
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            mRadii[i] = sign * (min + (max - min) * i / (LEVEL_COUNT - 1));
+        }
+    }
+
+    /**
+     * 半径最大的一级，决定蒙版的范围。
+     */
+    float getMaxRadius() {
+        return mRadii[LEVEL_COUNT - 1];
+    }
+
+    boolean isValid(float shadowOffsetX, float shadowOffsetY, int shadowBlur) {
+        return mValid
+                && mOffsetX == shadowOffsetX
+                && mOffsetY == shadowOffsetY
+                && mShadowBlur == shadowBlur;
+    }
+
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * 在后台线程渲染所有级别的蒙版，调用前需要先{@link #invalidate()}，渲染期间不能绘制。
+     */
+    void render(@NonNull ShadowRenderer renderer,
+                @NonNull Path shadowOutline,
+                float cornerRadius,
+                int left,
+                int top,
+                int width,
+                int height,
+                float shadowOffsetX,
+                float shadowOffsetY,
+                int shadowBlur) {
+        for (int i = 0; i < LEVEL_COUNT; i++) {
+            final Bitmap bitmap = obtainBitmap(mBitmaps[i], width, height);
+            mBitmaps[i] = bitmap;
+            renderer.renderShadow(bitmap, left, top, shadowOutline, cornerRadius,
+                    mRadii[i], shadowOffsetX, shadowOffsetY, shadowBlur);
+        }
+    }
+
+    /**
+     * 在主线程记录渲染时的参数，之后参数相同时可以直接绘制。
+     */
+    void onRendered(int left, int top, float shadowOffsetX, float shadowOffsetY, int shadowBlur) {
+        mLeft = left;
+        mTop = top;
+        mOffsetX = shadowOffsetX;
+        mOffsetY = shadowOffsetY;
+        mShadowBlur = shadowBlur;
+        mValid = true;
+    }
+
+    /**
+     * 尺寸相同时直接清空复用，尺寸改变但内存足够时重新配置，否则才创建新的位图。
+     */
+    @NonNull
+    private static Bitmap obtainBitmap(@Nullable Bitmap bitmap, int width, int height) {
+        if (bitmap != null) {
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                    && bitmap.getAllocationByteCount() >= width * height) {
+                bitmap.reconfigure(width, height, Bitmap.Config.ALPHA_8);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+    }
+
+    /**
+     * 在最接近shadowRadius的两级之间混合绘制，超出范围时绘制最近的一级，返回绘制的位图数量。
+     */
+    int draw(@NonNull Canvas canvas, @NonNull Paint paint, float shadowRadius, int shadowColor) {
+        final float radius = Math.abs(shadowRadius);
+        int index = 0;
+        while (index < LEVEL_COUNT - 2 && radius > Math.abs(mRadii[index + 1])) {
+            index++;
+        }
+        final float from = Math.abs(mRadii[index]);
+        final float to = Math.abs(mRadii[index + 1]);
+        float fraction = to > from ? (radius - from) / (to - from) : 0F;
+        fraction = Math.max(0F, Math.min(1F, fraction));
+        final int alpha = Color.alpha(shadowColor);
+        int count = 0;
+        if (drawLevel(canvas, paint, index, shadowColor, Math.round(alpha * (1F - fraction)))) {
+            count++;
+        }
+        if (drawLevel(canvas, paint, index + 1, shadowColor, Math.round(alpha * fraction))) {
+            count++;
+        }
+        return count;
+    }
+
+    private boolean drawLevel(@NonNull Canvas canvas, @NonNull Paint paint, int index, int shadowColor, int alpha) {
+        if (alpha <= 0) {
+            return false;
+        }
+        paint.setColor(Color.argb(alpha, Color.red(shadowColor), Color.green(shadowColor), Color.blue(shadowColor)));
+        canvas.drawBitmap(mBitmaps[index], mLeft, mTop, paint);
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 不依赖{@link ShadowLayout}的外阴影蒙版缓存，供{@link ShadowItemDecoration}、{@link ShadowDrawable}
+ * 和为子控件绘制阴影的容器使用，每个实例只记住上一次的结果，需要分别复用时每个使用方持有一个实例。
+ * <p>
+ * 轮廓由{@link ShadowLayout.ShadowOutlineProvider#buildShadowOutline(ShadowPathBuffer, int, int)}构建，
+ * 蒙版覆盖{@link #calcShadowExtent(float, float, float, int, int, RectF)}的范围。
+ * 提供者支持{@link ShadowLayout.ShadowOutlineProvider#buildShadowOutlineKey(ShadowKey.Builder)}时通过{@link ShadowCache}共享，
+ * 不支持时按轮廓内容比较，只复用上一次渲染的结果。
+ */
+@MainThread
+public final class ShadowMaskCache {
+    private ShadowKey.Builder mShadowKeyBuilder = new ShadowKey.Builder();
+    private final ShadowPathBuffer mOutlineBuffer = new ShadowPathBuffer();
+    private final ShadowPathReceiver mPathReceiver = new ShadowPathReceiver();
+    private final Path mShadowOutline = new Path();
+    private final RectF mRoundRect = new RectF();
+
+    // 上一次使用的阴影，尺寸和参数不变时可以跳过缓存查找
+    private final ShadowPathBuffer mLastOutline = new ShadowPathBuffer();
+    private ShadowKey.Builder mLastShadowKeyBuilder = new ShadowKey.Builder();
+    private Bitmap mLastShadowBitmap = null;
+
+    /**
+     * 阴影在轮廓坐标系中的范围，包含模糊的扩散范围和偏移，扩散范围和{@link ShadowLayout}一致。
+     */
+    public static void calcShadowExtent(float shadowRadius,
+                                        float shadowOffsetX,
+                                        float shadowOffsetY,
+                                        int width,
+                                        int height,
+                                        @NonNull RectF extent) {
+        final float reach = ShadowLayout.calcBlurReach(shadowRadius);
+        extent.set(
+                (float) Math.floor(Math.min(shadowOffsetX, 0F) - reach),
+                (float) Math.floor(Math.min(shadowOffsetY, 0F) - reach),
+                (float) Math.ceil(width + Math.max(shadowOffsetX, 0F) + reach),
+                (float) Math.ceil(height + Math.max(shadowOffsetY, 0F) + reach)
+        );
+    }
+
+    /**
+     * 获取宽高为width、height的轮廓的阴影蒙版，位图的(0, 0)对应extent的左上角，
+     * extent由调用方通过{@link #calcShadowExtent(float, float, float, int, int, RectF)}计算后传入。
+     * 轮廓为空，或者提供者不支持不依赖布局的轮廓时返回null，调用方不绘制阴影。
+     */
+    @Nullable
+    public Bitmap obtain(@NonNull ShadowLayout.ShadowOutlineProvider provider,
+                         int width,
+                         int height,
+                         float shadowRadius,
+                         float shadowOffsetX,
+                         float shadowOffsetY,
+                         @ShadowLayout.ShadowBlur int shadowBlur,
+                         @NonNull RectF extent) {
+        final ShadowKey.Builder builder = mShadowKeyBuilder.reset(provider.getClass())
+                .append(width)
+                .append(height)
+                .append(Math.abs(shadowRadius))
+                .append(shadowOffsetX)
+                .append(shadowOffsetY)
+                .append(shadowBlur);
+        if (provider.buildShadowOutlineKey(builder)) {
+            if (mLastShadowBitmap != null && builder.matches(mLastShadowKeyBuilder)) {
+                return mLastShadowBitmap;
+            }
+            Bitmap bitmap = ShadowCache.getInstance().get(builder);
+            if (bitmap == null) {
+                if (!buildOutline(provider, width, height)) {
+                    return null;
+                }
+                bitmap = render(provider, width, height, shadowRadius, shadowOffsetX, shadowOffsetY, shadowBlur, extent);
+                if (bitmap == null) {
+                    return null;
+                }
+                // 只有新渲染的蒙版才需要分配key
+                ShadowCache.getInstance().put(builder.build(), bitmap);
+            }
+            mLastOutline.reset();
+            return rememberLast(bitmap);
+        }
+        // 无法从参数判断轮廓是否改变，按轮廓内容比较
+        if (!buildOutline(provider, width, height)) {
+            return null;
+        }
+        if (mLastShadowBitmap != null
+                && builder.matches(mLastShadowKeyBuilder)
+                && mOutlineBuffer.contentEquals(mLastOutline)) {
+            return mLastShadowBitmap;
+        }
+        final Bitmap bitmap = render(provider, width, height, shadowRadius, shadowOffsetX, shadowOffsetY, shadowBlur, extent);
+        mLastOutline.set(mOutlineBuffer);
+        return rememberLast(bitmap);
+    }
+
+    /**
+     * 交换两个构建器，当前的内容成为上一次的内容，不需要复制或分配key。
+     */
+    @Nullable
+    private Bitmap rememberLast(@Nullable Bitmap bitmap) {
+        final ShadowKey.Builder builder = mShadowKeyBuilder;
+        mShadowKeyBuilder = mLastShadowKeyBuilder;
+        mLastShadowKeyBuilder = builder;
+        mLastShadowBitmap = bitmap;
+        return bitmap;
+    }
+
+    /**
+     * 返回false表示提供者不支持不依赖布局的轮廓，在绘制中调用，不能抛出异常。
+     */
+    private boolean buildOutline(@NonNull ShadowLayout.ShadowOutlineProvider provider, int width, int height) {
+        mOutlineBuffer.reset();
+        return provider.buildShadowOutline(mOutlineBuffer, width, height);
+    }
+
+    @Nullable
+    private Bitmap render(@NonNull ShadowLayout.ShadowOutlineProvider provider,
+                          int width,
+                          int height,
+                          float shadowRadius,
+                          float shadowOffsetX,
+                          float shadowOffsetY,
+                          @ShadowLayout.ShadowBlur int shadowBlur,
+                          @NonNull RectF extent) {
+        if (mOutlineBuffer.isEmpty()) {
+            return null;
+        }
+        mShadowOutline.reset();
+        mPathReceiver.replay(mOutlineBuffer, mShadowOutline);
+        final float cornerRadius = provider.getShadowOutlineRoundRect(width, height, mRoundRect);
+        final Bitmap bitmap = Bitmap.createBitmap((int) extent.width(), (int) extent.height(),
+                Bitmap.Config.ALPHA_8);
+        ShadowRenderer.getMainRenderer().renderShadow(bitmap, (int) extent.left, (int) extent.top,
+                mShadowOutline, cornerRadius, -Math.abs(shadowRadius), shadowOffsetX, shadowOffsetY, shadowBlur);
+        return bitmap;
+    }
+}
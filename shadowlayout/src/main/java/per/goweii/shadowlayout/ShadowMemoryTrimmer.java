@@ -0,0 +1,50 @@
+package per.goweii.shadowlayout;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * 系统内存不足时释放共享的阴影位图缓存和主线程渲染器的临时蒙版
+ * <p>
+ * {@link ShadowLayout}和{@link ShadowItemDecoration}会自动注册，进程内只注册一次。
+ * 只使用{@link ShadowDrawable}时需要自行调用{@link #register(Context)}。
+ * 已经在使用缓存位图的布局不受影响，只是之后不能再共享。
+ */
+public final class ShadowMemoryTrimmer implements ComponentCallbacks2 {
+    private static boolean sRegistered = false;
+
+    private ShadowMemoryTrimmer() {
+    }
+
+    @MainThread
+    public static void register(@NonNull Context context) {
+        if (sRegistered) {
+            return;
+        }
+        sRegistered = true;
+        final Context applicationContext = context.getApplicationContext();
+        (applicationContext != null ? applicationContext : context)
+                .registerComponentCallbacks(new ShadowMemoryTrimmer());
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            ShadowCache.getInstance().evictAll();
+            ShadowRenderer.trimMainRenderer();
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+}
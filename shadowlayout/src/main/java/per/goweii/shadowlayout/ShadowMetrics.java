@@ -0,0 +1,281 @@
+package per.goweii.shadowlayout;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 阴影布局的绘制统计
+ * <p>
+ * 默认关闭，关闭时{@link ShadowLayout}只会多一次静态变量的判断。
+ * 通过{@link #setEnabled(boolean)}开启后，每个布局会记录自己的统计，同时累加到全局统计{@link #getGlobal()}中，
+ * 每次绘制完成后回调{@link Listener}，可以接入自己的性能监控。
+ * <p>
+ * 统计只在主线程更新和读取，需要跨线程使用时请通过{@link #snapshot()}复制。
+ * <p>
+ * 在测试中可以在操作前后各取一次快照，用{@link #delta(ShadowMetrics)}得到一帧或一次设置的开销并断言上限，
+ * 例如一次绘制的离屏图层数量、一次设置触发的重新布局次数。
+ */
+public final class ShadowMetrics {
+    private static boolean sEnabled = false;
+    private static Listener sListener = null;
+    private static final ShadowMetrics sGlobal = new ShadowMetrics();
+
+    private long mDrawCount = 0;
+    private long mOutlineRebuildCount = 0;
+    private long mSaveLayerCount = 0;
+    private long mShadowRenderCount = 0;
+    private long mShadowCacheHitCount = 0;
+    private long mLayoutRequestCount = 0;
+    private long mInvalidateCount = 0;
+    private long mPathDrawCount = 0;
+    private long mBitmapDrawCount = 0;
+    private long mPaintChangeCount = 0;
+    private long mDrawShadowNanos = 0;
+    private long mClipNanos = 0;
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    @MainThread
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    @MainThread
+    public static void setListener(@Nullable Listener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * 所有布局的累计统计
+     */
+    @MainThread
+    @NonNull
+    public static ShadowMetrics getGlobal() {
+        return sGlobal;
+    }
+
+    static void dispatchDraw(@NonNull ShadowLayout shadowLayout, @NonNull ShadowMetrics metrics) {
+        metrics.mDrawCount++;
+        sGlobal.mDrawCount++;
+        Listener listener = sListener;
+        if (listener != null) {
+            listener.onShadowDraw(shadowLayout, metrics);
+        }
+    }
+
+    void recordOutlineRebuild() {
+        mOutlineRebuildCount++;
+        sGlobal.mOutlineRebuildCount++;
+    }
+
+    void recordSaveLayer() {
+        mSaveLayerCount++;
+        sGlobal.mSaveLayerCount++;
+    }
+
+    void recordShadowRender() {
+        mShadowRenderCount++;
+        sGlobal.mShadowRenderCount++;
+    }
+
+    void recordShadowCacheHit() {
+        mShadowCacheHitCount++;
+        sGlobal.mShadowCacheHitCount++;
+    }
+
+    void recordLayoutRequest() {
+        mLayoutRequestCount++;
+        sGlobal.mLayoutRequestCount++;
+    }
+
+    void recordInvalidate() {
+        mInvalidateCount++;
+        sGlobal.mInvalidateCount++;
+    }
+
+    void recordDrawOps(int pathDraws, int bitmapDraws, int paintChanges) {
+        mPathDrawCount += pathDraws;
+        mBitmapDrawCount += bitmapDraws;
+        mPaintChangeCount += paintChanges;
+        sGlobal.mPathDrawCount += pathDraws;
+        sGlobal.mBitmapDrawCount += bitmapDraws;
+        sGlobal.mPaintChangeCount += paintChanges;
+    }
+
+    void recordDrawShadow(long nanos) {
+        mDrawShadowNanos += nanos;
+        sGlobal.mDrawShadowNanos += nanos;
+    }
+
+    void recordClip(long nanos) {
+        mClipNanos += nanos;
+        sGlobal.mClipNanos += nanos;
+    }
+
+    /**
+     * 绘制次数
+     */
+    public long getDrawCount() {
+        return mDrawCount;
+    }
+
+    /**
+     * 轮廓重新构建的次数
+     */
+    public long getOutlineRebuildCount() {
+        return mOutlineRebuildCount;
+    }
+
+    /**
+     * 使用离屏图层的次数
+     */
+    public long getSaveLayerCount() {
+        return mSaveLayerCount;
+    }
+
+    /**
+     * 阴影重新模糊或重新记录的次数
+     */
+    public long getShadowRenderCount() {
+        return mShadowRenderCount;
+    }
+
+    /**
+     * 直接复用已有阴影（缓存位图或已记录的节点）的次数
+     */
+    public long getShadowCacheHitCount() {
+        return mShadowCacheHitCount;
+    }
+
+    /**
+     * 阴影内边距改变导致重新设置内边距的次数
+     */
+    public long getLayoutRequestCount() {
+        return mLayoutRequestCount;
+    }
+
+    /**
+     * 处理阴影参数改变的次数，同一帧内或批量修改中的多次修改只计一次
+     */
+    public long getInvalidateCount() {
+        return mInvalidateCount;
+    }
+
+    /**
+     * 以轮廓路径进行绘制或裁剪的次数
+     */
+    public long getPathDrawCount() {
+        return mPathDrawCount;
+    }
+
+    /**
+     * 绘制阴影位图的次数
+     */
+    public long getBitmapDrawCount() {
+        return mBitmapDrawCount;
+    }
+
+    /**
+     * 绘制前重新配置画笔的次数
+     */
+    public long getPaintChangeCount() {
+        return mPaintChangeCount;
+    }
+
+    /**
+     * 绘制阴影的累计耗时，单位为纳秒
+     */
+    public long getDrawShadowNanos() {
+        return mDrawShadowNanos;
+    }
+
+    /**
+     * 裁剪子控件的累计耗时，单位为纳秒
+     */
+    public long getClipNanos() {
+        return mClipNanos;
+    }
+
+    @NonNull
+    public ShadowMetrics snapshot() {
+        ShadowMetrics metrics = new ShadowMetrics();
+        metrics.mDrawCount = mDrawCount;
+        metrics.mOutlineRebuildCount = mOutlineRebuildCount;
+        metrics.mSaveLayerCount = mSaveLayerCount;
+        metrics.mShadowRenderCount = mShadowRenderCount;
+        metrics.mShadowCacheHitCount = mShadowCacheHitCount;
+        metrics.mLayoutRequestCount = mLayoutRequestCount;
+        metrics.mInvalidateCount = mInvalidateCount;
+        metrics.mPathDrawCount = mPathDrawCount;
+        metrics.mBitmapDrawCount = mBitmapDrawCount;
+        metrics.mPaintChangeCount = mPaintChangeCount;
+        metrics.mDrawShadowNanos = mDrawShadowNanos;
+        metrics.mClipNanos = mClipNanos;
+        return metrics;
+    }
+
+    /**
+     * 从since到当前的增量，since通常是之前的{@link #snapshot()}。
+     */
+    @NonNull
+    public ShadowMetrics delta(@NonNull ShadowMetrics since) {
+        ShadowMetrics metrics = new ShadowMetrics();
+        metrics.mDrawCount = mDrawCount - since.mDrawCount;
+        metrics.mOutlineRebuildCount = mOutlineRebuildCount - since.mOutlineRebuildCount;
+        metrics.mSaveLayerCount = mSaveLayerCount - since.mSaveLayerCount;
+        metrics.mShadowRenderCount = mShadowRenderCount - since.mShadowRenderCount;
+        metrics.mShadowCacheHitCount = mShadowCacheHitCount - since.mShadowCacheHitCount;
+        metrics.mLayoutRequestCount = mLayoutRequestCount - since.mLayoutRequestCount;
+        metrics.mInvalidateCount = mInvalidateCount - since.mInvalidateCount;
+        metrics.mPathDrawCount = mPathDrawCount - since.mPathDrawCount;
+        metrics.mBitmapDrawCount = mBitmapDrawCount - since.mBitmapDrawCount;
+        metrics.mPaintChangeCount = mPaintChangeCount - since.mPaintChangeCount;
+        metrics.mDrawShadowNanos = mDrawShadowNanos - since.mDrawShadowNanos;
+        metrics.mClipNanos = mClipNanos - since.mClipNanos;
+        return metrics;
+    }
+
+    public void reset() {
+        mDrawCount = 0;
+        mOutlineRebuildCount = 0;
+        mSaveLayerCount = 0;
+        mShadowRenderCount = 0;
+        mShadowCacheHitCount = 0;
+        mLayoutRequestCount = 0;
+        mInvalidateCount = 0;
+        mPathDrawCount = 0;
+        mBitmapDrawCount = 0;
+        mPaintChangeCount = 0;
+        mDrawShadowNanos = 0;
+        mClipNanos = 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ShadowMetrics{" +
+                "draws=" + mDrawCount +
+                ", outlineRebuilds=" + mOutlineRebuildCount +
+                ", saveLayers=" + mSaveLayerCount +
+                ", shadowRenders=" + mShadowRenderCount +
+                ", shadowCacheHits=" + mShadowCacheHitCount +
+                ", layoutRequests=" + mLayoutRequestCount +
+                ", invalidates=" + mInvalidateCount +
+                ", pathDraws=" + mPathDrawCount +
+                ", bitmapDraws=" + mBitmapDrawCount +
+                ", paintChanges=" + mPaintChangeCount +
+                ", drawShadowNanos=" + mDrawShadowNanos +
+                ", clipNanos=" + mClipNanos +
+                '}';
+    }
+
+    public interface Listener {
+        /**
+         * 每次绘制完成后回调，metrics为该布局的累计统计。
+         */
+        void onShadowDraw(@NonNull ShadowLayout shadowLayout, @NonNull ShadowMetrics metrics);
+    }
+}
@@ -0,0 +1,131 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * 绘制在父布局{@link android.view.ViewGroupOverlay}中的外阴影
+ * <p>
+ * 范围只覆盖阴影本身，不需要关闭父布局的clipChildren。
+ * 浮层绘制在父布局所有子控件之上，阴影已经去掉了轮廓内部，不会遮挡布局本身，但会覆盖范围内的相邻控件。
+ * 每次绘制前同步布局的位置和变换，平移、缩放等属性动画时阴影会跟随布局移动。
+ */
+@RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+final class ShadowOverlay extends Drawable implements ViewTreeObserver.OnPreDrawListener {
+    private final ShadowLayout mShadowLayout;
+    private final RectF mShadowExtent = new RectF();
+    private final RectF mMappedExtent = new RectF();
+    private final Rect mOverlayBounds = new Rect();
+    private ViewGroup mParent = null;
+    private float mLastX = Float.NaN;
+    private float mLastY = Float.NaN;
+
+    ShadowOverlay(@NonNull ShadowLayout shadowLayout) {
+        mShadowLayout = shadowLayout;
+    }
+
+    @Nullable
+    ViewGroup getParent() {
+        return mParent;
+    }
+
+    void attach(@NonNull ViewGroup parent) {
+        if (mParent == parent) {
+            return;
+        }
+        detach();
+        mParent = parent;
+        parent.getOverlay().add(this);
+        mShadowLayout.getViewTreeObserver().addOnPreDrawListener(this);
+        updateBounds();
+    }
+
+    void detach() {
+        if (mParent == null) {
+            return;
+        }
+        mParent.getOverlay().remove(this);
+        mShadowLayout.getViewTreeObserver().removeOnPreDrawListener(this);
+        mParent = null;
+        mLastX = Float.NaN;
+        mLastY = Float.NaN;
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        updateBounds();
+        return true;
+    }
+
+    /**
+     * 按布局当前的位置和变换更新浮层的范围，范围或位置改变时刷新父布局。
+     */
+    private void updateBounds() {
+        final ShadowLayout layout = mShadowLayout;
+        if (layout.calcOverlayShadowExtent(mShadowExtent)) {
+            mMappedExtent.set(mShadowExtent);
+            if (!layout.hasIdentityMatrix()) {
+                final Matrix matrix = layout.getMatrix();
+                matrix.mapRect(mMappedExtent);
+            }
+            mMappedExtent.offset(layout.getLeft(), layout.getTop());
+            mMappedExtent.roundOut(mOverlayBounds);
+        } else {
+            mShadowExtent.setEmpty();
+            mOverlayBounds.setEmpty();
+        }
+        final float x = layout.getX();
+        final float y = layout.getY();
+        if (!mOverlayBounds.equals(getBounds()) || x != mLastX || y != mLastY) {
+            mLastX = x;
+            mLastY = y;
+            setBounds(mOverlayBounds);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        final ShadowLayout layout = mShadowLayout;
+        if (layout.getVisibility() != View.VISIBLE || layout.getAlpha() <= 0F) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(layout.getLeft(), layout.getTop());
+        if (!layout.hasIdentityMatrix()) {
+            canvas.concat(layout.getMatrix());
+        }
+        if (layout.getAlpha() < 1F) {
+            canvas.saveLayerAlpha(mShadowExtent.left, mShadowExtent.top, mShadowExtent.right, mShadowExtent.bottom,
+                    Math.round(layout.getAlpha() * 255), Canvas.ALL_SAVE_FLAG);
+        }
+        layout.drawOverlayShadow(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,320 @@
+package per.goweii.shadowlayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * 纯Java实现的轮廓命令缓冲
+ * <p>
+ * 以{@code byte[]}记录命令、以{@code float[]}记录坐标，不依赖Android的绘图类，
+ * 可以在其他线程构建，按内容比较、计算哈希，或者作为紧凑的轮廓缓存。
+ * 需要绘制时通过{@link ShadowPathReceiver}一次性回放到{@link android.graphics.Path}中。
+ * <p>
+ * 构建时会同时记录轮廓的范围，二次曲线按控制点计算，圆弧按实际经过的端点和极值点计算。
+ * <p>
+ * 实例不是线程安全的。
+ */
+public final class ShadowPathBuffer {
+    public static final byte VERB_MOVE = 0;
+    public static final byte VERB_LINE = 1;
+    public static final byte VERB_QUAD = 2;
+    public static final byte VERB_ARC = 3;
+    public static final byte VERB_CLOSE = 4;
+
+    private byte[] mVerbs;
+    private float[] mPoints;
+    private int mVerbCount = 0;
+    private int mPointCount = 0;
+
+    private float mLeft = Float.POSITIVE_INFINITY;
+    private float mTop = Float.POSITIVE_INFINITY;
+    private float mRight = Float.NEGATIVE_INFINITY;
+    private float mBottom = Float.NEGATIVE_INFINITY;
+
+    public ShadowPathBuffer() {
+        this(16);
+    }
+
+    public ShadowPathBuffer(int verbCapacity) {
+        verbCapacity = Math.max(verbCapacity, 1);
+        mVerbs = new byte[verbCapacity];
+        mPoints = new float[verbCapacity * 4];
+    }
+
+    @NonNull
+    public ShadowPathBuffer reset() {
+        mVerbCount = 0;
+        mPointCount = 0;
+        mLeft = Float.POSITIVE_INFINITY;
+        mTop = Float.POSITIVE_INFINITY;
+        mRight = Float.NEGATIVE_INFINITY;
+        mBottom = Float.NEGATIVE_INFINITY;
+        return this;
+    }
+
+    /**
+     * 复制other的内容，容量足够时不会产生分配。
+     */
+    @NonNull
+    public ShadowPathBuffer set(@NonNull ShadowPathBuffer other) {
+        if (other == this) {
+            return this;
+        }
+        ensureVerbCapacity(other.mVerbCount);
+        ensurePointCapacity(other.mPointCount);
+        System.arraycopy(other.mVerbs, 0, mVerbs, 0, other.mVerbCount);
+        System.arraycopy(other.mPoints, 0, mPoints, 0, other.mPointCount);
+        mVerbCount = other.mVerbCount;
+        mPointCount = other.mPointCount;
+        mLeft = other.mLeft;
+        mTop = other.mTop;
+        mRight = other.mRight;
+        mBottom = other.mBottom;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return mVerbCount == 0;
+    }
+
+    public int getVerbCount() {
+        return mVerbCount;
+    }
+
+    public void moveTo(float x, float y) {
+        addVerb(VERB_MOVE, 2);
+        addPoint(x, y);
+    }
+
+    public void lineTo(float x, float y) {
+        addVerb(VERB_LINE, 2);
+        addPoint(x, y);
+    }
+
+    public void quadTo(float x1, float y1, float x2, float y2) {
+        addVerb(VERB_QUAD, 4);
+        addPoint(x1, y1);
+        addPoint(x2, y2);
+    }
+
+    /**
+     * 沿椭圆(left, top, right, bottom)从startAngle绘制sweepAngle度的圆弧，角度以x轴正方向为0、顺时针为正，
+     * 和{@link android.graphics.Path#arcTo(android.graphics.RectF, float, float)}一致。
+     */
+    public void arcTo(float left, float top, float right, float bottom, float startAngle, float sweepAngle) {
+        addVerb(VERB_ARC, 6);
+        mPoints[mPointCount++] = left;
+        mPoints[mPointCount++] = top;
+        mPoints[mPointCount++] = right;
+        mPoints[mPointCount++] = bottom;
+        mPoints[mPointCount++] = startAngle;
+        mPoints[mPointCount++] = sweepAngle;
+        includeArc(left, top, right, bottom, startAngle, sweepAngle);
+    }
+
+    public void close() {
+        addVerb(VERB_CLOSE, 0);
+    }
+
+    /**
+     * 顺时针添加圆角矩形，radii依次为左上、右上、右下、左下角的x和y半径，
+     * 相邻圆角之和超过边长时和{@link android.graphics.Path#addRoundRect(android.graphics.RectF, float[], android.graphics.Path.Direction)}一样等比缩小。
+     */
+    public void addRoundRect(float left, float top, float right, float bottom, @NonNull float[] radii) {
+        final float width = right - left;
+        final float height = bottom - top;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        float scale = 1F;
+        scale = calcRadiiScale(scale, width, radii[0], radii[2]);
+        scale = calcRadiiScale(scale, width, radii[6], radii[4]);
+        scale = calcRadiiScale(scale, height, radii[1], radii[7]);
+        scale = calcRadiiScale(scale, height, radii[3], radii[5]);
+        final float tlX = radii[0] * scale, tlY = radii[1] * scale;
+        final float trX = radii[2] * scale, trY = radii[3] * scale;
+        final float brX = radii[4] * scale, brY = radii[5] * scale;
+        final float blX = radii[6] * scale, blY = radii[7] * scale;
+
+        moveTo(left + tlX, top);
+        lineTo(right - trX, top);
+        if (trX > 0 && trY > 0) {
+            arcTo(right - trX * 2, top, right, top + trY * 2, 270, 90);
+        }
+        lineTo(right, bottom - brY);
+        if (brX > 0 && brY > 0) {
+            arcTo(right - brX * 2, bottom - brY * 2, right, bottom, 0, 90);
+        }
+        lineTo(left + blX, bottom);
+        if (blX > 0 && blY > 0) {
+            arcTo(left, bottom - blY * 2, left + blX * 2, bottom, 90, 90);
+        }
+        lineTo(left, top + tlY);
+        if (tlX > 0 && tlY > 0) {
+            arcTo(left, top, left + tlX * 2, top + tlY * 2, 180, 90);
+        }
+        close();
+    }
+
+    /**
+     * 按左、上、右、下的顺序把轮廓的范围写入bounds的前4位，没有内容时全部为0。
+     */
+    public void computeBounds(@NonNull float[] bounds) {
+        if (mLeft > mRight || mTop > mBottom) {
+            bounds[0] = bounds[1] = bounds[2] = bounds[3] = 0F;
+            return;
+        }
+        bounds[0] = mLeft;
+        bounds[1] = mTop;
+        bounds[2] = mRight;
+        bounds[3] = mBottom;
+    }
+
+    /**
+     * 按顺序回放所有命令。
+     */
+    public void replay(@NonNull Receiver receiver) {
+        final byte[] verbs = mVerbs;
+        final float[] points = mPoints;
+        int p = 0;
+        for (int i = 0; i < mVerbCount; i++) {
+            switch (verbs[i]) {
+                case VERB_MOVE:
+                    receiver.moveTo(points[p], points[p + 1]);
+                    p += 2;
+                    break;
+                case VERB_LINE:
+                    receiver.lineTo(points[p], points[p + 1]);
+                    p += 2;
+                    break;
+                case VERB_QUAD:
+                    receiver.quadTo(points[p], points[p + 1], points[p + 2], points[p + 3]);
+                    p += 4;
+                    break;
+                case VERB_ARC:
+                    receiver.arcTo(points[p], points[p + 1], points[p + 2], points[p + 3],
+                            points[p + 4], points[p + 5]);
+                    p += 6;
+                    break;
+                case VERB_CLOSE:
+                    receiver.close();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown verb " + verbs[i]);
+            }
+        }
+    }
+
+    /**
+     * 命令和坐标完全一致时返回true。
+     */
+    public boolean contentEquals(@Nullable ShadowPathBuffer other) {
+        if (other == this) return true;
+        if (other == null) return false;
+        if (mVerbCount != other.mVerbCount || mPointCount != other.mPointCount) {
+            return false;
+        }
+        for (int i = 0; i < mVerbCount; i++) {
+            if (mVerbs[i] != other.mVerbs[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < mPointCount; i++) {
+            if (Float.floatToIntBits(mPoints[i]) != Float.floatToIntBits(other.mPoints[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int contentHashCode() {
+        int result = 1;
+        for (int i = 0; i < mVerbCount; i++) {
+            result = 31 * result + mVerbs[i];
+        }
+        for (int i = 0; i < mPointCount; i++) {
+            result = 31 * result + Float.floatToIntBits(mPoints[i]);
+        }
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ShadowPathBuffer{verbs=" + Arrays.toString(Arrays.copyOf(mVerbs, mVerbCount))
+                + ", points=" + Arrays.toString(Arrays.copyOf(mPoints, mPointCount)) + "}";
+    }
+
+    private void addVerb(byte verb, int points) {
+        ensureVerbCapacity(mVerbCount + 1);
+        ensurePointCapacity(mPointCount + points);
+        mVerbs[mVerbCount++] = verb;
+    }
+
+    private void addPoint(float x, float y) {
+        mPoints[mPointCount++] = x;
+        mPoints[mPointCount++] = y;
+        includePoint(x, y);
+    }
+
+    private void includePoint(float x, float y) {
+        if (x < mLeft) mLeft = x;
+        if (x > mRight) mRight = x;
+        if (y < mTop) mTop = y;
+        if (y > mBottom) mBottom = y;
+    }
+
+    private void includeArc(float left, float top, float right, float bottom, float startAngle, float sweepAngle) {
+        final float cx = (left + right) * 0.5F;
+        final float cy = (top + bottom) * 0.5F;
+        final float rx = (right - left) * 0.5F;
+        final float ry = (bottom - top) * 0.5F;
+        includeArcPoint(cx, cy, rx, ry, startAngle);
+        includeArcPoint(cx, cy, rx, ry, startAngle + sweepAngle);
+        final float from = Math.min(startAngle, startAngle + sweepAngle);
+        final float to = Math.max(startAngle, startAngle + sweepAngle);
+        // 圆弧经过的坐标轴方向上的极值点
+        for (float angle = (float) Math.ceil(from / 90F) * 90F; angle <= to; angle += 90F) {
+            includeArcPoint(cx, cy, rx, ry, angle);
+        }
+    }
+
+    private void includeArcPoint(float cx, float cy, float rx, float ry, float angle) {
+        final double radians = Math.toRadians(angle);
+        includePoint(cx + rx * (float) Math.cos(radians), cy + ry * (float) Math.sin(radians));
+    }
+
+    private void ensureVerbCapacity(int capacity) {
+        if (mVerbs.length < capacity) {
+            mVerbs = Arrays.copyOf(mVerbs, Math.max(capacity, mVerbs.length * 2));
+        }
+    }
+
+    private void ensurePointCapacity(int capacity) {
+        if (mPoints.length < capacity) {
+            mPoints = Arrays.copyOf(mPoints, Math.max(capacity, mPoints.length * 2));
+        }
+    }
+
+    private static float calcRadiiScale(float scale, float length, float radius1, float radius2) {
+        final float sum = radius1 + radius2;
+        if (sum > length) {
+            return Math.min(scale, length / sum);
+        }
+        return scale;
+    }
+
+    public interface Receiver {
+        void moveTo(float x, float y);
+
+        void lineTo(float x, float y);
+
+        void quadTo(float x1, float y1, float x2, float y2);
+
+        void arcTo(float left, float top, float right, float bottom, float startAngle, float sweepAngle);
+
+        void close();
+    }
+}
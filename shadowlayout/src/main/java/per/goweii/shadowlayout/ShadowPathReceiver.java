@@ -0,0 +1,54 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 把{@link ShadowPathBuffer}回放到{@link Path}中
+ * <p>
+ * 实例不是线程安全的。
+ */
+public final class ShadowPathReceiver implements ShadowPathBuffer.Receiver {
+    private final RectF mOval = new RectF();
+    private Path mPath = null;
+
+    /**
+     * 把buffer中的命令追加到path中。
+     */
+    public void replay(@NonNull ShadowPathBuffer buffer, @NonNull Path path) {
+        mPath = path;
+        try {
+            buffer.replay(this);
+        } finally {
+            mPath = null;
+        }
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        mPath.moveTo(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        mPath.lineTo(x, y);
+    }
+
+    @Override
+    public void quadTo(float x1, float y1, float x2, float y2) {
+        mPath.quadTo(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void arcTo(float left, float top, float right, float bottom, float startAngle, float sweepAngle) {
+        mOval.set(left, top, right, bottom);
+        mPath.arcTo(mOval, startAngle, sweepAngle);
+    }
+
+    @Override
+    public void close() {
+        mPath.close();
+    }
+}
@@ -0,0 +1,267 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.graphics.Region;
+import android.os.Build;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 阴影渲染器
+ * <p>
+ * 负责把轮廓的阴影绘制到画布上，或者渲染为ALPHA_8的阴影蒙版位图。
+ * 模糊可以使用平台的{@link Paint#setShadowLayer(float, float, float, int)}，
+ * 也可以使用{@link ShadowBlurEngine}。
+ * <p>
+ * 实例不是线程安全的，主线程可以使用{@link #getMainRenderer()}共享的实例，其他线程需要自行创建。
+ */
+public final class ShadowRenderer {
+    private static ShadowRenderer sMainRenderer = null;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final PorterDuffXfermode mXfermodeDstOut = new PorterDuffXfermode(PorterDuff.Mode.DST_OUT);
+    private final Canvas mCanvas = new Canvas();
+    private final ShadowBlurEngine mBlurEngine = new ShadowBlurEngine();
+    private final ShadowAnalyticBlur mAnalyticBlur = new ShadowAnalyticBlur();
+    private final RectF mOutlineBounds = new RectF();
+
+    private Bitmap mMaskBitmap = null;
+    private byte[] mMaskPixels = null;
+    private ByteBuffer mMaskBuffer = null;
+
+    @MainThread
+    @NonNull
+    public static ShadowRenderer getMainRenderer() {
+        if (sMainRenderer == null) {
+            sMainRenderer = new ShadowRenderer();
+        }
+        return sMainRenderer;
+    }
+
+    /**
+     * 平台模糊半径和{@link ShadowLayout#getShadowRadius()}的换算关系。
+     */
+    public static float calcBlurRadius(float shadowRadius) {
+        return Math.abs(shadowRadius) * 0.75F;
+    }
+
+    /**
+     * 直接在画布上绘制阴影，并擦除轮廓内部，调用方需要自行准备图层。
+     */
+    public void drawShadow(@NonNull Canvas canvas,
+                           @NonNull Path shadowOutline,
+                           float shadowRadius,
+                           float shadowOffsetX,
+                           float shadowOffsetY,
+                           int shadowColor) {
+        mPaint.setStyle(Paint.Style.FILL);
+
+        mPaint.setShadowLayer(calcBlurRadius(shadowRadius), shadowOffsetX, shadowOffsetY, shadowColor);
+        mPaint.setColor(Color.TRANSPARENT);
+        mPaint.setXfermode(null);
+        canvas.drawPath(shadowOutline, mPaint);
+
+        mPaint.clearShadowLayer();
+        eraseOutline(canvas, shadowOutline);
+    }
+
+    /**
+     * 先裁剪掉轮廓内部再绘制阴影，结果和{@link #drawShadow(Canvas, Path, float, float, float, int)}相同，
+     * 但不需要擦除，也就不需要离屏图层。
+     */
+    public void drawShadowClipOut(@NonNull Canvas canvas,
+                                  @NonNull Path shadowOutline,
+                                  float shadowRadius,
+                                  float shadowOffsetX,
+                                  float shadowOffsetY,
+                                  int shadowColor) {
+        int saveCount = canvas.save();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            canvas.clipOutPath(shadowOutline);
+        } else {
+            canvas.clipPath(shadowOutline, Region.Op.DIFFERENCE);
+        }
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setShadowLayer(calcBlurRadius(shadowRadius), shadowOffsetX, shadowOffsetY, shadowColor);
+        mPaint.setColor(Color.TRANSPARENT);
+        mPaint.setXfermode(null);
+        canvas.drawPath(shadowOutline, mPaint);
+        mPaint.clearShadowLayer();
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 将阴影蒙版渲染到透明的ALPHA_8位图中，位图的(0, 0)对应轮廓坐标系中的(left, top)。
+     *
+     * @param shadowBlur {@link ShadowLayout#SHADOW_BLUR_PLATFORM}、{@link ShadowLayout#SHADOW_BLUR_GAUSSIAN}
+     *                   或{@link ShadowLayout#SHADOW_BLUR_BOX}，
+     *                   {@link ShadowLayout#SHADOW_BLUR_ANALYTIC}在这里按{@link ShadowLayout#SHADOW_BLUR_GAUSSIAN}处理
+     */
+    public void renderShadow(@NonNull Bitmap bitmap,
+                             int left,
+                             int top,
+                             @NonNull Path shadowOutline,
+                             float shadowRadius,
+                             float shadowOffsetX,
+                             float shadowOffsetY,
+                             @ShadowLayout.ShadowBlur int shadowBlur) {
+        renderShadow(bitmap, left, top, shadowOutline, -1F,
+                shadowRadius, shadowOffsetX, shadowOffsetY, shadowBlur);
+    }
+
+    /**
+     * 同{@link #renderShadow(Bitmap, int, int, Path, float, float, float, int)}，
+     * 轮廓是统一圆角的圆角矩形时通过cornerRadius传入圆角半径（否则为-1），
+     * {@link ShadowLayout#SHADOW_BLUR_ANALYTIC}会使用{@link ShadowAnalyticBlur}直接计算。
+     */
+    public void renderShadow(@NonNull Bitmap bitmap,
+                             int left,
+                             int top,
+                             @NonNull Path shadowOutline,
+                             float cornerRadius,
+                             float shadowRadius,
+                             float shadowOffsetX,
+                             float shadowOffsetY,
+                             @ShadowLayout.ShadowBlur int shadowBlur) {
+        if (shadowBlur == ShadowLayout.SHADOW_BLUR_ANALYTIC && cornerRadius >= 0) {
+            renderAnalyticShadow(bitmap, left, top, shadowOutline, cornerRadius,
+                    shadowRadius, shadowOffsetX, shadowOffsetY);
+            return;
+        }
+        if (shadowBlur == ShadowLayout.SHADOW_BLUR_PLATFORM) {
+            mCanvas.setBitmap(bitmap);
+            int saveCount = mCanvas.save();
+            mCanvas.translate(-left, -top);
+            drawShadow(mCanvas, shadowOutline, shadowRadius, shadowOffsetX, shadowOffsetY, Color.BLACK);
+            mCanvas.restoreToCount(saveCount);
+            mCanvas.setBitmap(null);
+            return;
+        }
+
+        final int mode = shadowBlur == ShadowLayout.SHADOW_BLUR_BOX
+                ? ShadowBlurEngine.MODE_BOX : ShadowBlurEngine.MODE_GAUSSIAN;
+        final float sigma = ShadowBlurEngine.convertRadiusToSigma(calcBlurRadius(shadowRadius));
+        final int reach = ShadowBlurEngine.calcBlurReach(sigma, mode);
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int maskWidth = width + reach * 2;
+        final int maskHeight = height + reach * 2;
+        ensureMaskBitmap(maskWidth, maskHeight);
+
+        // 在四周留出模糊的扩散范围，避免位图边缘外的轮廓丢失
+        mMaskBitmap.eraseColor(Color.TRANSPARENT);
+        mCanvas.setBitmap(mMaskBitmap);
+        int saveCount = mCanvas.save();
+        mCanvas.clipRect(0, 0, maskWidth, maskHeight);
+        mCanvas.translate(reach - left + shadowOffsetX, reach - top + shadowOffsetY);
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.clearShadowLayer();
+        mPaint.setXfermode(null);
+        mPaint.setColor(Color.BLACK);
+        mCanvas.drawPath(shadowOutline, mPaint);
+        mCanvas.restoreToCount(saveCount);
+        mCanvas.setBitmap(null);
+
+        final int maskStride = mMaskBitmap.getRowBytes();
+        mMaskBuffer.rewind();
+        mMaskBitmap.copyPixelsToBuffer(mMaskBuffer);
+        mBlurEngine.blur(mMaskPixels, 0, maskWidth, maskHeight, maskStride, sigma, mode);
+
+        // 原地去掉四周的扩散范围，按目标位图的行宽排列
+        final int stride = bitmap.getRowBytes();
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(mMaskPixels, (y + reach) * maskStride + reach, mMaskPixels, y * stride, width);
+        }
+        mMaskBuffer.rewind();
+        bitmap.copyPixelsFromBuffer(mMaskBuffer);
+
+        mCanvas.setBitmap(bitmap);
+        saveCount = mCanvas.save();
+        mCanvas.translate(-left, -top);
+        eraseOutline(mCanvas, shadowOutline);
+        mCanvas.restoreToCount(saveCount);
+        mCanvas.setBitmap(null);
+    }
+
+    private void renderAnalyticShadow(@NonNull Bitmap bitmap,
+                                      int left,
+                                      int top,
+                                      @NonNull Path shadowOutline,
+                                      float cornerRadius,
+                                      float shadowRadius,
+                                      float shadowOffsetX,
+                                      float shadowOffsetY) {
+        final float sigma = ShadowBlurEngine.convertRadiusToSigma(calcBlurRadius(shadowRadius));
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        ensureMaskBitmap(width, height);
+
+        // 圆角矩形轮廓的范围就是矩形本身
+        shadowOutline.computeBounds(mOutlineBounds, true);
+        mOutlineBounds.offset(shadowOffsetX - left, shadowOffsetY - top);
+        final int stride = bitmap.getRowBytes();
+        mAnalyticBlur.render(mMaskPixels, 0, width, height, stride,
+                mOutlineBounds.left, mOutlineBounds.top, mOutlineBounds.right, mOutlineBounds.bottom,
+                cornerRadius, sigma);
+        mMaskBuffer.rewind();
+        bitmap.copyPixelsFromBuffer(mMaskBuffer);
+
+        mCanvas.setBitmap(bitmap);
+        int saveCount = mCanvas.save();
+        mCanvas.translate(-left, -top);
+        eraseOutline(mCanvas, shadowOutline);
+        mCanvas.restoreToCount(saveCount);
+        mCanvas.setBitmap(null);
+    }
+
+    /**
+     * 释放模糊使用的临时蒙版。
+     */
+    public void trimMemory() {
+        mMaskBitmap = null;
+        mMaskPixels = null;
+        mMaskBuffer = null;
+    }
+
+    /**
+     * 释放主线程共享实例的临时蒙版，由{@link ShadowMemoryTrimmer}在内存不足时调用。
+     */
+    @MainThread
+    static void trimMainRenderer() {
+        if (sMainRenderer != null) {
+            sMainRenderer.trimMemory();
+        }
+    }
+
+    private void eraseOutline(@NonNull Canvas canvas, @NonNull Path shadowOutline) {
+        mPaint.setColor(Color.BLACK);
+        mPaint.setXfermode(mXfermodeDstOut);
+        canvas.drawPath(shadowOutline, mPaint);
+        mPaint.setXfermode(null);
+    }
+
+    private void ensureMaskBitmap(int width, int height) {
+        if (mMaskBitmap != null
+                && mMaskBitmap.getWidth() >= width
+                && mMaskBitmap.getHeight() >= height) {
+            return;
+        }
+        if (mMaskBitmap != null) {
+            width = Math.max(width, mMaskBitmap.getWidth());
+            height = Math.max(height, mMaskBitmap.getHeight());
+        }
+        mMaskBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        mMaskPixels = new byte[mMaskBitmap.getRowBytes() * height];
+        mMaskBuffer = ByteBuffer.wrap(mMaskPixels);
+    }
+}
@@ -0,0 +1,100 @@
+package per.goweii.shadowlayout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShadowAnalyticBlurTest {
+    private static final float RECT_WIDTH = 80F;
+    private static final float RECT_HEIGHT = 64F;
+    private static final int SUPERSAMPLE = 8;
+
+    @Test
+    public void matchesGaussianBlurOfRasterizedRoundRect() {
+        for (float cornerRadius : new float[]{0F, 8F, 20F, 30F}) {
+            for (float sigma : new float[]{1F, 4F, 8F, 15F}) {
+                final int margin = (int) Math.ceil(sigma * 3F) + 4;
+                final int width = (int) RECT_WIDTH + margin * 2;
+                final int height = (int) RECT_HEIGHT + margin * 2;
+                // 小数坐标，让边缘落在像素中间
+                final float left = margin + 0.25F;
+                final float top = margin + 0.5F;
+                final float right = left + RECT_WIDTH;
+                final float bottom = top + RECT_HEIGHT;
+
+                int[] expected = rasterizeRoundRect(width, height, left, top, right, bottom, cornerRadius);
+                new ShadowBlurEngine().blur(expected, 0, width, height, width, sigma, ShadowBlurEngine.MODE_GAUSSIAN);
+
+                byte[] actual = new byte[width * height];
+                new ShadowAnalyticBlur().render(actual, 0, width, height, width,
+                        left, top, right, bottom, cornerRadius, sigma);
+
+                final String message = "corner=" + cornerRadius + " sigma=" + sigma;
+                int maxError = 0;
+                long totalError = 0;
+                for (int i = 0; i < actual.length; i++) {
+                    final int error = Math.abs((actual[i] & 0xFF) - expected[i]);
+                    maxError = Math.max(maxError, error);
+                    totalError += error;
+                }
+                assertTrue(message + " max error " + maxError, maxError <= 7);
+                final double meanError = (double) totalError / actual.length;
+                assertTrue(message + " mean error " + meanError, meanError <= 1.5);
+            }
+        }
+    }
+
+    @Test
+    public void emptyRectClearsTheMask() {
+        byte[] mask = new byte[16 * 16];
+        Arrays.fill(mask, (byte) 0x7F);
+        new ShadowAnalyticBlur().render(mask, 0, 16, 16, 16, 8F, 8F, 8F, 12F, 2F, 3F);
+        for (byte value : mask) {
+            assertEquals(0, value);
+        }
+    }
+
+    @Test
+    public void erfMatchesKnownValues() {
+        assertEquals(0F, ShadowAnalyticBlur.erf(0F), 1e-4F);
+        assertEquals(0.5204999F, ShadowAnalyticBlur.erf(0.5F), 1e-4F);
+        assertEquals(0.8427008F, ShadowAnalyticBlur.erf(1F), 1e-4F);
+        assertEquals(-0.9953223F, ShadowAnalyticBlur.erf(-2F), 1e-4F);
+        assertEquals(1F, ShadowAnalyticBlur.erf(10F), 0F);
+        assertEquals(-1F, ShadowAnalyticBlur.erf(-10F), 0F);
+    }
+
+    /**
+     * 每个像素超采样后得到圆角矩形的覆盖率（0~255）。
+     */
+    private static int[] rasterizeRoundRect(int width, int height,
+                                            float left, float top, float right, float bottom,
+                                            float cornerRadius) {
+        final float corner = Math.min(cornerRadius, Math.min(right - left, bottom - top) * 0.5F);
+        int[] mask = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int covered = 0;
+                for (int sy = 0; sy < SUPERSAMPLE; sy++) {
+                    for (int sx = 0; sx < SUPERSAMPLE; sx++) {
+                        final float px = x + (sx + 0.5F) / SUPERSAMPLE;
+                        final float py = y + (sy + 0.5F) / SUPERSAMPLE;
+                        if (px < left || px > right || py < top || py > bottom) {
+                            continue;
+                        }
+                        final float dx = Math.max(Math.max(left + corner - px, px - (right - corner)), 0F);
+                        final float dy = Math.max(Math.max(top + corner - py, py - (bottom - corner)), 0F);
+                        if (dx * dx + dy * dy <= corner * corner) {
+                            covered++;
+                        }
+                    }
+                }
+                mask[y * width + x] = Math.round(covered * 255F / (SUPERSAMPLE * SUPERSAMPLE));
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,207 @@
+package per.goweii.shadowlayout;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShadowBlurEngineTest {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void gaussianMatchesReferenceConvolution() {
+        for (float sigma : new float[]{0.8F, 2.5F, 6F}) {
+            int[] mask = randomMask(WIDTH, HEIGHT, 1);
+            double[] expected = referenceGaussian(mask, WIDTH, HEIGHT, sigma);
+            new ShadowBlurEngine().blur(mask, 0, WIDTH, HEIGHT, WIDTH, sigma, ShadowBlurEngine.MODE_GAUSSIAN);
+            // 横竖两趟各舍入一次，误差不超过1
+            assertMaxError("sigma=" + sigma, expected, mask, 1);
+        }
+    }
+
+    @Test
+    public void boxMatchesReferenceConvolution() {
+        for (float sigma : new float[]{0.8F, 2.5F, 6F}) {
+            int[] mask = randomMask(WIDTH, HEIGHT, 2);
+            double[] expected = referenceBox(mask, WIDTH, HEIGHT, sigma);
+            new ShadowBlurEngine().blur(mask, 0, WIDTH, HEIGHT, WIDTH, sigma, ShadowBlurEngine.MODE_BOX);
+            // 横竖共6趟盒式模糊，每一趟都会舍入
+            assertMaxError("sigma=" + sigma, expected, mask, 2);
+        }
+    }
+
+    @Test
+    public void byteAndIntMasksBlurIdentically() {
+        for (int mode : new int[]{ShadowBlurEngine.MODE_GAUSSIAN, ShadowBlurEngine.MODE_BOX}) {
+            int[] ints = randomMask(WIDTH, HEIGHT, 3);
+            byte[] bytes = toBytes(ints);
+            ShadowBlurEngine engine = new ShadowBlurEngine();
+            engine.blur(ints, 0, WIDTH, HEIGHT, WIDTH, 3F, mode);
+            engine.blur(bytes, 0, WIDTH, HEIGHT, WIDTH, 3F, mode);
+            assertArrayEquals("mode=" + mode, toBytes(ints), bytes);
+        }
+    }
+
+    @Test
+    public void offsetAndStrideOnlyTouchTheMaskRegion() {
+        final int offset = 5;
+        final int stride = WIDTH + 11;
+        final byte sentinel = (byte) 0xA5;
+        for (int mode : new int[]{ShadowBlurEngine.MODE_GAUSSIAN, ShadowBlurEngine.MODE_BOX}) {
+            int[] compact = randomMask(WIDTH, HEIGHT, 4);
+            byte[] padded = new byte[offset + stride * HEIGHT + 7];
+            Arrays.fill(padded, sentinel);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    padded[offset + y * stride + x] = (byte) compact[y * WIDTH + x];
+                }
+            }
+            byte[] expected = toBytes(compact);
+            new ShadowBlurEngine().blur(expected, 0, WIDTH, HEIGHT, WIDTH, 4F, mode);
+            new ShadowBlurEngine().blur(padded, offset, WIDTH, HEIGHT, stride, 4F, mode);
+
+            for (int i = 0; i < padded.length; i++) {
+                final int p = i - offset;
+                final boolean inside = p >= 0 && p / stride < HEIGHT && p % stride < WIDTH;
+                if (inside) {
+                    assertEquals("mode=" + mode + " pixel " + i,
+                            expected[(p / stride) * WIDTH + p % stride], padded[i]);
+                } else {
+                    // 行尾的填充和缓冲区前后都不能被当作蒙版读取或写入
+                    assertEquals("mode=" + mode + " padding " + i, sentinel, padded[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pixelsOutsideTheMaskAreTransparent() {
+        // 角落的单个像素模糊后，在蒙版内的部分和零填充的参考卷积一致
+        int[] mask = new int[WIDTH * HEIGHT];
+        mask[0] = 255;
+        double[] expected = referenceGaussian(mask, WIDTH, HEIGHT, 3F);
+        new ShadowBlurEngine().blur(mask, 0, WIDTH, HEIGHT, WIDTH, 3F, ShadowBlurEngine.MODE_GAUSSIAN);
+        assertMaxError("corner", expected, mask, 1);
+        assertTrue(mask[0] < 255);
+    }
+
+    @Test
+    public void repeatedCallsOfTheSameSizeDoNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        final long threadId = Thread.currentThread().getId();
+        for (int mode : new int[]{ShadowBlurEngine.MODE_GAUSSIAN, ShadowBlurEngine.MODE_BOX}) {
+            ShadowBlurEngine engine = new ShadowBlurEngine();
+            byte[] mask = toBytes(randomMask(WIDTH, HEIGHT, 5));
+            // 首次调用按尺寸分配缓冲和卷积核
+            engine.blur(mask, 0, WIDTH, HEIGHT, WIDTH, 3F, mode);
+            final long before = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100; i++) {
+                engine.blur(mask, 0, WIDTH, HEIGHT, WIDTH, 3F, mode);
+            }
+            final long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+            // 一行缓冲就有WIDTH * 4字节，留出读取计数本身的少量开销
+            assertTrue("mode=" + mode + " allocated " + allocated + " bytes", allocated < WIDTH * 4);
+        }
+    }
+
+    private static int[] randomMask(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] mask = new int[width * height];
+        for (int i = 0; i < mask.length; i++) {
+            // 块状的蒙版更接近实际的轮廓
+            mask[i] = random.nextInt(4) == 0 ? random.nextInt(256) : (((i % width) / 6 + (i / width) / 5) % 2) * 255;
+        }
+        return mask;
+    }
+
+    private static byte[] toBytes(int[] values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static double[] referenceGaussian(int[] mask, int width, int height, float sigma) {
+        final int radius = (int) Math.ceil(sigma * 3F);
+        double[] kernel = new double[radius * 2 + 1];
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = Math.exp(-(i * i) / (2.0 * sigma * sigma));
+            total += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= total;
+        }
+        double[] values = toDoubles(mask);
+        values = convolve(values, width, height, kernel, true);
+        return convolve(values, width, height, kernel, false);
+    }
+
+    private static double[] referenceBox(int[] mask, int width, int height, float sigma) {
+        double[] values = toDoubles(mask);
+        for (boolean horizontal : new boolean[]{true, false}) {
+            for (int pass = 0; pass < ShadowBlurEngine.BOX_PASSES; pass++) {
+                final int radius = ShadowBlurEngine.calcBoxRadius(sigma, pass, ShadowBlurEngine.BOX_PASSES);
+                if (radius <= 0) {
+                    continue;
+                }
+                double[] kernel = new double[radius * 2 + 1];
+                Arrays.fill(kernel, 1.0 / kernel.length);
+                values = convolve(values, width, height, kernel, horizontal);
+            }
+        }
+        return values;
+    }
+
+    private static double[] toDoubles(int[] mask) {
+        double[] values = new double[mask.length];
+        for (int i = 0; i < mask.length; i++) {
+            values[i] = mask[i];
+        }
+        return values;
+    }
+
+    /**
+     * 朴素的一维卷积，范围外按0处理。
+     */
+    private static double[] convolve(double[] in, int width, int height, double[] kernel, boolean horizontal) {
+        final int radius = kernel.length / 2;
+        double[] out = new double[in.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double sum = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    final int sx = horizontal ? x + k : x;
+                    final int sy = horizontal ? y : y + k;
+                    if (sx >= 0 && sx < width && sy >= 0 && sy < height) {
+                        sum += kernel[k + radius] * in[sy * width + sx];
+                    }
+                }
+                out[y * width + x] = sum;
+            }
+        }
+        return out;
+    }
+
+    private static void assertMaxError(String message, double[] expected, int[] actual, int tolerance) {
+        double maxError = 0;
+        for (int i = 0; i < expected.length; i++) {
+            maxError = Math.max(maxError, Math.abs(expected[i] - actual[i]));
+        }
+        assertTrue(message + " max error " + maxError, maxError <= tolerance);
+    }
+}
@@ -0,0 +1,98 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 提供者是否支持不依赖布局的轮廓时{@link ShadowDrawable}的绘制结果
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ShadowDrawableTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 100;
+
+    @Test
+    public void unsupportedProviderDrawsNothing() {
+        ShadowDrawable drawable = createDrawable(new LayoutOnlyShadowOutlineProvider());
+        assertEquals(0, countVisiblePixels(draw(drawable)));
+
+        // 共享状态创建的Drawable同样只是不绘制
+        Drawable copy = drawable.getConstantState().newDrawable();
+        assertEquals(0, countVisiblePixels(draw(copy)));
+    }
+
+    @Test
+    public void supportedProviderDrawsShadow() {
+        ShadowDrawable drawable = createDrawable(new RectShadowOutlineProvider());
+        assertTrue(countVisiblePixels(draw(drawable)) > 0);
+    }
+
+    private static ShadowDrawable createDrawable(ShadowLayout.ShadowOutlineProvider provider) {
+        ShadowDrawable drawable = new ShadowDrawable(provider);
+        drawable.setShadowRadius(8F);
+        drawable.setShadowColor(Color.BLACK);
+        drawable.setBounds(0, 0, WIDTH, HEIGHT);
+        return drawable;
+    }
+
+    private static Bitmap draw(Drawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, WIDTH, HEIGHT);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static int countVisiblePixels(Bitmap bitmap) {
+        int count = 0;
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            for (int x = 0; x < bitmap.getWidth(); x++) {
+                if (Color.alpha(bitmap.getPixel(x, y)) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 只实现带布局的重载
+     */
+    private static class LayoutOnlyShadowOutlineProvider extends ShadowLayout.ShadowOutlineProvider {
+        @Override
+        public void buildShadowOutline(ShadowLayout shadowLayout,
+                                       Path shadowOutline,
+                                       RectF shadowInsets) {
+            shadowOutline.addRect(shadowInsets.left, shadowInsets.top,
+                    shadowLayout.getWidth() - shadowInsets.right,
+                    shadowLayout.getHeight() - shadowInsets.bottom,
+                    Path.Direction.CW);
+        }
+    }
+
+    private static class RectShadowOutlineProvider extends LayoutOnlyShadowOutlineProvider {
+        @Override
+        public boolean buildShadowOutline(ShadowPathBuffer shadowOutline, int width, int height) {
+            shadowOutline.moveTo(0F, 0F);
+            shadowOutline.lineTo(width, 0F);
+            shadowOutline.lineTo(width, height);
+            shadowOutline.lineTo(0F, height);
+            shadowOutline.close();
+            return true;
+        }
+    }
+}
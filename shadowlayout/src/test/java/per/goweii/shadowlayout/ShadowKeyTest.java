@@ -0,0 +1,54 @@
+package per.goweii.shadowlayout;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShadowKeyTest {
+    @Test
+    public void lookupFindsKeyWithSameContent() {
+        LinkedHashMap<ShadowKey, String> map = new LinkedHashMap<>(16, 0.75F, true);
+        for (int i = 0; i < 8; i++) {
+            map.put(fill(new ShadowKey.Builder(), i, -0F).build(), "key" + i);
+        }
+        ShadowKey.Builder builder = new ShadowKey.Builder();
+        for (int i = 0; i < 8; i++) {
+            assertEquals("key" + i, map.get(fill(builder, i, -0F).lookup()));
+        }
+        // 和ShadowKey一样按位比较，0F和-0F不同
+        assertNull(map.get(fill(builder, 3, 0F).lookup()));
+        // 内容是前缀也不相同
+        assertNull(map.get(builder.reset(ShadowKeyTest.class).append(3).lookup()));
+    }
+
+    @Test
+    public void lookupHashMatchesKeyHash() {
+        ShadowKey.Builder builder = fill(new ShadowKey.Builder(), 5, Float.NaN);
+        assertEquals(builder.build().hashCode(), builder.lookup().hashCode());
+    }
+
+    @Test
+    public void buildersMatchByContent() {
+        ShadowKey.Builder a = fill(new ShadowKey.Builder(), 2, 1F);
+        ShadowKey.Builder b = fill(new ShadowKey.Builder(), 2, 1F);
+        assertTrue(a.matches(b));
+        b.append(0F);
+        assertFalse(a.matches(b));
+        assertFalse(a.matches(fill(b, 2, 2F)));
+        assertFalse(a.matches(b.reset(Object.class).append(2).append(1F)));
+    }
+
+    private static ShadowKey.Builder fill(ShadowKey.Builder builder, int size, float last) {
+        // 超过初始容量，覆盖扩容后的查找
+        builder.reset(ShadowKeyTest.class).append(size);
+        for (int i = 0; i < 20; i++) {
+            builder.append(i * 0.5F);
+        }
+        return builder.append(last);
+    }
+}
@@ -0,0 +1,284 @@
+package per.goweii.shadowlayout;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import per.goweii.shadowlayout.testing.CountingCanvas;
+import per.goweii.shadowlayout.testing.CountingShadowPaint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 一次绘制和一次设置的开销上限
+ * <p>
+ * 测试中的画布是软件绘制的，{@link ShadowLayout#SHADOW_ERASE_AUTO}会使用图层，
+ * 硬件加速下的RenderNode路径不在这里覆盖。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, shadows = CountingShadowPaint.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ShadowLayoutBudgetTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+
+    private Context mContext;
+    private CountingCanvas mCanvas;
+
+    @Before
+    public void setUp() {
+        ShadowMetrics.setEnabled(true);
+        // 布局不会挂到窗口上，不需要Activity
+        mContext = RuntimeEnvironment.getApplication();
+        mCanvas = new CountingCanvas(Bitmap.createBitmap(WIDTH * 2, HEIGHT * 2, Bitmap.Config.ARGB_8888));
+        // 外阴影会画到布局之外
+        mCanvas.translate(WIDTH / 2F, HEIGHT / 2F);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowMetrics.setEnabled(false);
+    }
+
+    @Test
+    public void layerEraseUsesOneLayerForShadowAndOneForClip() {
+        CountingShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.shadowRadius, "-8dp")
+                .addAttribute(R.attr.shadowColor, "#66000000")
+                .addAttribute(R.attr.shadowErase, "layer")
+                .build());
+        ShadowMetrics before = drawSteadyFrame(layout);
+
+        assertEquals(2, mCanvas.getSaveLayerCount());
+        // 阴影、擦除轮廓内部、裁剪内容各一次
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 3);
+        assertEquals(0, mCanvas.getBitmapDrawCount());
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+        assertEquals(mCanvas.getSaveLayerCount(), layout.getShadowMetrics().delta(before).getSaveLayerCount());
+    }
+
+    @Test
+    public void clipOutEraseOnlyUsesTheClipLayer() {
+        CountingShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.shadowRadius, "-8dp")
+                .addAttribute(R.attr.shadowColor, "#66000000")
+                .addAttribute(R.attr.shadowErase, "clipOut")
+                .build());
+        drawSteadyFrame(layout);
+
+        assertEquals(1, mCanvas.getSaveLayerCount());
+        assertEquals(1, mCanvas.getPathClipCount());
+        // 阴影和裁剪内容各一次
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 2);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+    }
+
+    @Test
+    public void cachedShadowDrawsOneBitmapWithoutLayer() {
+        CountingShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.shadowRadius, "-8dp")
+                .addAttribute(R.attr.shadowColor, "#66000000")
+                .addAttribute(R.attr.shadowCacheEnabled, "true")
+                .build());
+        ShadowMetrics before = drawSteadyFrame(layout);
+
+        // 只有裁剪内容的图层
+        assertEquals(1, mCanvas.getSaveLayerCount());
+        assertEquals(1, mCanvas.getBitmapDrawCount());
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() <= 1);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+        assertEquals(0, layout.getShadowMetrics().delta(before).getShadowRenderCount());
+    }
+
+    @Test
+    public void colorChangeDoesNotRequestLayout() {
+        CountingShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.shadowRadius, "8dp")
+                .addAttribute(R.attr.shadowColor, "#66000000")
+                .build());
+        drawSteadyFrame(layout);
+        layout.mLayoutRequestCount = 0;
+
+        layout.setShadowColor(Color.RED);
+        drawFrame(layout);
+        assertEquals(0, layout.mLayoutRequestCount);
+        assertEquals(0, CountingShadowPaint.getAllocationCount());
+    }
+
+    @Test
+    public void insetsChangesInOneEditRequestOneLayout() {
+        CountingShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.shadowRadius, "8dp")
+                .addAttribute(R.attr.shadowColor, "#66000000")
+                .build());
+        drawSteadyFrame(layout);
+        layout.mLayoutRequestCount = 0;
+        ShadowMetrics before = layout.getShadowMetrics();
+
+        // edit和apply之间的多次修改合并为一次
+        layout.edit();
+        layout.setShadowRadius(12F);
+        layout.setShadowOffsetX(2F);
+        layout.setShadowOffsetY(4F);
+        layout.apply();
+        assertEquals(1, layout.mLayoutRequestCount);
+        assertEquals(1, layout.getShadowMetrics().delta(before).getLayoutRequestCount());
+
+        // 内边距没有改变时不需要重新布局
+        layout.mLayoutRequestCount = 0;
+        layout.setShadowRadius(12.2F);
+        drawFrame(layout);
+        assertEquals(0, layout.mLayoutRequestCount);
+    }
+
+    @Test
+    public void paddingIsUpdatedBeforeDraw() {
+        CountingShadowLayout layout = inflate(Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.shadowRadius, "8dp")
+                .addAttribute(R.attr.shadowColor, "#66000000")
+                .build());
+        drawSteadyFrame(layout);
+
+        layout.setShadowRadius(12F);
+        layout.setShadowOffsetX(2F);
+        RectF insets = layout.getShadowInsets();
+        assertEquals((int) (insets.left + 0.5F), layout.getPaddingLeft());
+        assertEquals((int) (insets.top + 0.5F), layout.getPaddingTop());
+        assertEquals((int) (insets.right + 0.5F), layout.getPaddingRight());
+        assertEquals((int) (insets.bottom + 0.5F), layout.getPaddingBottom());
+
+        // 绘制时不能再请求布局
+        layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, WIDTH, HEIGHT);
+        layout.mLayoutRequestCount = 0;
+        layout.draw(mCanvas);
+        assertEquals(0, layout.mLayoutRequestCount);
+    }
+
+    @Test
+    public void elevationBackendRestoresShadowColors() {
+        CountingShadowLayout layout = new CountingShadowLayout(mContext, null);
+        layout.setShadowOutlineProvider(new RoundRectShadowOutlineProvider());
+        layout.setShadowRadius(-8F);
+        layout.setOutlineAmbientShadowColor(Color.RED);
+        layout.setOutlineSpotShadowColor(Color.BLUE);
+        drawFrame(layout);
+
+        layout.setShadowBackend(ShadowLayout.SHADOW_BACKEND_ELEVATION);
+        assertEquals(ShadowLayout.SHADOW_BACKEND_ELEVATION, layout.getActiveShadowBackend());
+        layout.setShadowBackend(ShadowLayout.SHADOW_BACKEND_SOFTWARE);
+        assertEquals(ShadowLayout.SHADOW_BACKEND_SOFTWARE, layout.getActiveShadowBackend());
+        assertEquals(Color.RED, layout.getOutlineAmbientShadowColor());
+        assertEquals(Color.BLUE, layout.getOutlineSpotShadowColor());
+    }
+
+    @Test
+    public void radiusAnimationRendersLevelsInBackground() throws InterruptedException {
+        CountingShadowLayout layout = new CountingShadowLayout(mContext, null);
+        layout.setShadowOutlineProvider(new RectShadowOutlineProvider());
+        layout.setShadowRadius(-8F);
+        layout.setShadowColor(Color.argb(102, 0, 0, 0));
+        drawSteadyFrame(layout);
+
+        layout.beginShadowRadiusAnimation(-8F, -16F);
+        layout.setShadowRadius(-12F);
+        drawFrame(layout);
+        // 各级阴影准备好之前直接绘制当前半径的阴影
+        assertEquals(0, mCanvas.getBitmapDrawCount());
+        assertTrue("path draws " + mCanvas.getPathDrawCount(), mCanvas.getPathDrawCount() > 0);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mCanvas.getBitmapDrawCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.idleMainLooper();
+            drawFrame(layout);
+        }
+        // 两级之间混合，只有裁剪内容的图层
+        assertEquals(2, mCanvas.getBitmapDrawCount());
+        assertEquals(1, mCanvas.getSaveLayerCount());
+        layout.endShadowRadiusAnimation();
+    }
+
+    private CountingShadowLayout inflate(AttributeSet attrs) {
+        CountingShadowLayout layout = new CountingShadowLayout(mContext, attrs);
+        layout.setShadowOutlineProvider(new RectShadowOutlineProvider());
+        layout.addView(new View(mContext));
+        return layout;
+    }
+
+    /**
+     * 第一帧会构建轮廓和创建对象，返回第二帧开始前的统计，画布的计数只包含第二帧。
+     */
+    private ShadowMetrics drawSteadyFrame(CountingShadowLayout layout) {
+        drawFrame(layout);
+        ShadowMetrics before = layout.getShadowMetrics();
+        drawFrame(layout);
+        return before;
+    }
+
+    private void drawFrame(ShadowLayout layout) {
+        layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        layout.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas.resetCounts();
+        CountingShadowPaint.resetAllocationCount();
+        layout.draw(mCanvas);
+    }
+
+    private static class CountingShadowLayout extends ShadowLayout {
+        int mLayoutRequestCount;
+
+        CountingShadowLayout(Context context, AttributeSet attrs) {
+            super(context, attrs);
+        }
+
+        @Override
+        public void requestLayout() {
+            mLayoutRequestCount++;
+            super.requestLayout();
+        }
+    }
+
+    private static class RoundRectShadowOutlineProvider extends RectShadowOutlineProvider {
+        @Override
+        public float getShadowOutlineRoundRect(@NonNull ShadowLayout shadowLayout,
+                                               @NonNull RectF shadowInsets,
+                                               @NonNull RectF roundRect) {
+            roundRect.set(shadowInsets.left, shadowInsets.top,
+                    shadowLayout.getWidth() - shadowInsets.right,
+                    shadowLayout.getHeight() - shadowInsets.bottom);
+            return 0F;
+        }
+    }
+
+    private static class RectShadowOutlineProvider extends ShadowLayout.ShadowOutlineProvider {
+        @Override
+        public void buildShadowOutline(ShadowLayout shadowLayout,
+                                       Path shadowOutline,
+                                       RectF shadowInsets) {
+            shadowOutline.addRect(shadowInsets.left, shadowInsets.top,
+                    shadowLayout.getWidth() - shadowInsets.right,
+                    shadowLayout.getHeight() - shadowInsets.bottom,
+                    Path.Direction.CW);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package per.goweii.shadowlayout;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ShadowMemoryTrimmerTest {
+    @After
+    public void tearDown() {
+        ShadowCache.getInstance().evictAll();
+    }
+
+    @Test
+    public void trimMemoryEvictsSharedShadows() {
+        Application application = RuntimeEnvironment.getApplication();
+        ShadowMemoryTrimmer.register(application);
+        ShadowCache.getInstance().put(new ShadowKey.Builder().reset(ShadowMemoryTrimmerTest.class).append(1).build(),
+                Bitmap.createBitmap(8, 8, Bitmap.Config.ALPHA_8));
+
+        // 界面仍然可见时的轻度内存压力不释放
+        application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(1, ShadowCache.getInstance().getCount());
+
+        application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(0, ShadowCache.getInstance().getCount());
+    }
+}
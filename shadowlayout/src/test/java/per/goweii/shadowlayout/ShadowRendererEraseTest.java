@@ -0,0 +1,139 @@
+package per.goweii.shadowlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 裁剪掉轮廓再绘制和在图层中绘制后用DST_OUT擦除，两种方式的像素应该一致。
+ * <p>
+ * clipOutPath需要Android 8.0及以上，原生图形模式也只支持这些版本，低版本的clipPath分支不在这里覆盖。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ShadowRendererEraseTest {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 100;
+    private static final int SHADOW_COLOR = Color.argb(200, 20, 40, 60);
+
+    @Test
+    public void rectOutlineMatchesLayerErase() {
+        Path outline = new Path();
+        outline.addRect(30, 25, 90, 75, Path.Direction.CW);
+        for (float[] shadow : shadows()) {
+            Bitmap layer = drawWithLayer(outline, shadow);
+            Bitmap clipOut = drawWithClipOut(outline, shadow);
+            // 整数坐标的矩形没有抗锯齿的边缘，两种方式应该逐像素一致
+            assertPixels("shadow=" + shadow[0], layer, clipOut, null, 1);
+        }
+    }
+
+    @Test
+    public void roundRectOutlineMatchesLayerErase() {
+        Path outline = new Path();
+        outline.addRoundRect(new RectF(30.5F, 25.25F, 89.75F, 74.5F), 14F, 14F, Path.Direction.CW);
+        Bitmap edge = outlineEdge(outline);
+        for (float[] shadow : shadows()) {
+            Bitmap layer = drawWithLayer(outline, shadow);
+            Bitmap clipOut = drawWithClipOut(outline, shadow);
+            // 抗锯齿的边缘上，部分覆盖的擦除和部分覆盖的裁剪结果不同，跳过轮廓边缘的一圈像素
+            assertPixels("shadow=" + shadow[0], layer, clipOut, edge, 1);
+        }
+    }
+
+    @Test
+    public void outlineInteriorIsTransparent() {
+        Path outline = new Path();
+        outline.addRect(30, 25, 90, 75, Path.Direction.CW);
+        for (float[] shadow : shadows()) {
+            Bitmap clipOut = drawWithClipOut(outline, shadow);
+            for (int y = 25; y < 75; y++) {
+                for (int x = 30; x < 90; x++) {
+                    assertEquals("shadow=" + shadow[0] + " (" + x + ", " + y + ")",
+                            0, Color.alpha(clipOut.getPixel(x, y)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 半径和偏移的组合，半径总是按外阴影传入。
+     */
+    private static float[][] shadows() {
+        return new float[][]{
+                {-4F, 0F, 0F},
+                {-12F, 3F, 5F},
+                {-20F, -6F, 8F},
+        };
+    }
+
+    private static Bitmap drawWithLayer(Path outline, float[] shadow) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        int saveCount = canvas.saveLayer(0, 0, WIDTH, HEIGHT, null);
+        new ShadowRenderer().drawShadow(canvas, outline, shadow[0], shadow[1], shadow[2], SHADOW_COLOR);
+        canvas.restoreToCount(saveCount);
+        return bitmap;
+    }
+
+    private static Bitmap drawWithClipOut(Path outline, float[] shadow) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        new ShadowRenderer().drawShadowClipOut(canvas, outline, shadow[0], shadow[1], shadow[2], SHADOW_COLOR);
+        return bitmap;
+    }
+
+    private static Bitmap outlineEdge(Path outline) {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(3F);
+        paint.setColor(Color.BLACK);
+        new Canvas(bitmap).drawPath(outline, paint);
+        return bitmap;
+    }
+
+    private static void assertPixels(String message, Bitmap expected, Bitmap actual, Bitmap skip, int tolerance) {
+        int maxError = 0;
+        int compared = 0;
+        int shadowed = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (skip != null && Color.alpha(skip.getPixel(x, y)) != 0) {
+                    continue;
+                }
+                final int e = expected.getPixel(x, y);
+                final int a = actual.getPixel(x, y);
+                if (Color.alpha(e) != 0) {
+                    shadowed++;
+                }
+                // getPixel返回非预乘的颜色，透明度很低时颜色分量误差会被放大，按预乘后的值比较
+                maxError = Math.max(maxError, Math.abs(Color.alpha(e) - Color.alpha(a)));
+                maxError = Math.max(maxError, Math.abs(premultiply(e, Color.red(e)) - premultiply(a, Color.red(a))));
+                maxError = Math.max(maxError, Math.abs(premultiply(e, Color.green(e)) - premultiply(a, Color.green(a))));
+                maxError = Math.max(maxError, Math.abs(premultiply(e, Color.blue(e)) - premultiply(a, Color.blue(a))));
+                compared++;
+            }
+        }
+        assertTrue(message + " compared " + compared + " pixels", compared > WIDTH * HEIGHT / 2);
+        assertTrue(message + " has no shadow", shadowed > 0);
+        assertTrue(message + " max error " + maxError, maxError <= tolerance);
+    }
+
+    private static int premultiply(int color, int component) {
+        return Math.round(component * Color.alpha(color) / 255F);
+    }
+}
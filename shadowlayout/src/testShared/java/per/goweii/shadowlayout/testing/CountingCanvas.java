@@ -0,0 +1,254 @@
+package per.goweii.shadowlayout.testing;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
+
+/**
+ * 记录绘制操作次数的画布，用于断言一次绘制的开销
+ * <p>
+ * 不同版本的重载之间可能互相调用，只统计最外层的一次。
+ */
+public class CountingCanvas extends Canvas {
+    private int mDepth = 0;
+
+    private int mSaveLayerCount = 0;
+    private int mPathDrawCount = 0;
+    private int mPathClipCount = 0;
+    private int mBitmapDrawCount = 0;
+
+    public CountingCanvas(Bitmap bitmap) {
+        super(bitmap);
+    }
+
+    public void resetCounts() {
+        mSaveLayerCount = 0;
+        mPathDrawCount = 0;
+        mPathClipCount = 0;
+        mBitmapDrawCount = 0;
+    }
+
+    public int getSaveLayerCount() {
+        return mSaveLayerCount;
+    }
+
+    public int getPathDrawCount() {
+        return mPathDrawCount;
+    }
+
+    /**
+     * clipPath和clipOutPath的次数
+     */
+    public int getPathClipCount() {
+        return mPathClipCount;
+    }
+
+    public int getBitmapDrawCount() {
+        return mBitmapDrawCount;
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint, int saveFlags) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayer(bounds, paint, saveFlags);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayer(bounds, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint, int saveFlags) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayer(left, top, right, bottom, paint, saveFlags);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayer(left, top, right, bottom, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayerAlpha(RectF bounds, int alpha, int saveFlags) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayerAlpha(bounds, alpha, saveFlags);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayerAlpha(RectF bounds, int alpha) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayerAlpha(bounds, alpha);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha, int saveFlags) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayerAlpha(left, top, right, bottom, alpha, saveFlags);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha) {
+        if (enter()) {
+            mSaveLayerCount++;
+        }
+        try {
+            return super.saveLayerAlpha(left, top, right, bottom, alpha);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        if (enter()) {
+            mPathDrawCount++;
+        }
+        try {
+            super.drawPath(path, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public boolean clipPath(Path path, Region.Op op) {
+        if (enter()) {
+            mPathClipCount++;
+        }
+        try {
+            return super.clipPath(path, op);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public boolean clipPath(Path path) {
+        if (enter()) {
+            mPathClipCount++;
+        }
+        try {
+            return super.clipPath(path);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public boolean clipOutPath(Path path) {
+        if (enter()) {
+            mPathClipCount++;
+        }
+        try {
+            return super.clipOutPath(path);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        if (enter()) {
+            mBitmapDrawCount++;
+        }
+        try {
+            super.drawBitmap(bitmap, left, top, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        if (enter()) {
+            mBitmapDrawCount++;
+        }
+        try {
+            super.drawBitmap(bitmap, src, dst, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        if (enter()) {
+            mBitmapDrawCount++;
+        }
+        try {
+            super.drawBitmap(bitmap, src, dst, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        if (enter()) {
+            mBitmapDrawCount++;
+        }
+        try {
+            super.drawBitmap(bitmap, matrix, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    private boolean enter() {
+        return mDepth++ == 0;
+    }
+
+    private void exit() {
+        mDepth--;
+    }
+}
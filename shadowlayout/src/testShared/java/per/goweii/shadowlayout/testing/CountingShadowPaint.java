@@ -0,0 +1,44 @@
+package per.goweii.shadowlayout.testing;
+
+import android.graphics.Paint;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowNativePaint;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+/**
+ * 统计{@link Paint}创建次数的影子类，在NATIVE图形模式下通过{@code @Config(shadows = CountingShadowPaint.class)}启用
+ * <p>
+ * {@link Paint#Paint()}会调用{@link Paint#Paint(int)}，所以只需要统计带参数的两个构造方法，
+ * 计数后仍然执行原本的构造方法。
+ */
+@Implements(Paint.class)
+public class CountingShadowPaint extends ShadowNativePaint {
+    private static int sAllocationCount = 0;
+
+    @RealObject
+    private Paint mRealPaint;
+
+    public static int getAllocationCount() {
+        return sAllocationCount;
+    }
+
+    public static void resetAllocationCount() {
+        sAllocationCount = 0;
+    }
+
+    @Implementation
+    protected void __constructor__(int flags) {
+        sAllocationCount++;
+        Shadow.invokeConstructor(Paint.class, mRealPaint, ClassParameter.from(int.class, flags));
+    }
+
+    @Implementation
+    protected void __constructor__(Paint otherPaint) {
+        sAllocationCount++;
+        Shadow.invokeConstructor(Paint.class, mRealPaint, ClassParameter.from(Paint.class, otherPaint));
+    }
+}